@@ -0,0 +1,80 @@
+package group13;
+
+import genius.core.AgentID;
+import genius.core.Bid;
+import genius.core.actions.Accept;
+import genius.core.actions.Action;
+import genius.core.actions.Offer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the decision paths of Agent13 in the middle of a negotiation, after it received the recorded offers
+ * of the opponent, with a ranked (uncertain) profile.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class Agent13Benchmark {
+    @Param({"party", "university", "car_purchase"})
+    public String domain;
+
+    @Param({"0.5", "0.9"})
+    public double time;
+
+    private Agent13 agent;
+    private List<Bid> stream;
+    private Set<Bid> candidates;
+    private double threshold;
+    private final AgentID opponent = new AgentID("Opponent@bench");
+    private final List<Class<? extends Action>> actions = new ArrayList<>();
+    private int next;
+
+    @Setup
+    public void setup() throws Exception {
+        BenchmarkSession session = BenchmarkSession.load(domain);
+        stream = session.opponentBids;
+        agent = session.newAgent(100, BenchmarkSession.timeline(time), 50);
+        threshold = agent.getUtilityThreshold();
+        candidates = agent.generateBids(threshold, 10);
+        Collections.addAll(actions, Accept.class, Offer.class);
+    }
+
+    @Benchmark
+    public Action chooseAction() {
+        return agent.chooseAction(actions);
+    }
+
+    @Benchmark
+    public Set<Bid> generateBids() {
+        return agent.generateBids(threshold, 10);
+    }
+
+    @Benchmark
+    public Bid getNash() {
+        return agent.getNash(candidates);
+    }
+
+    @Benchmark
+    public void receiveMessage() {
+        agent.receiveMessage(opponent, new Offer(opponent, stream.get(next++ % stream.size())));
+    }
+}
@@ -0,0 +1,28 @@
+package group13;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks of the agent hot paths from the project directory (templates and logs are read from it).
+ * Throughput and latency percentiles come from the benchmark modes, the allocation rate from the GC profiler.
+ * Arguments, if any, are regular expressions of the benchmarks to run.
+ */
+public class BenchmarkMain {
+    public static void main(String[] args) throws Exception {
+        OptionsBuilder options = new OptionsBuilder();
+        if (args.length == 0)
+            options.include("group13\\..*Benchmark");
+        for (String pattern : args)
+            options.include(pattern);
+
+        Options built = options.addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.JSON)
+                .result("bench_output.json")
+                .build();
+        new Runner(built).run();
+    }
+}
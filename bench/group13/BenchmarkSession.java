@@ -0,0 +1,166 @@
+package group13;
+
+import genius.core.AgentID;
+import genius.core.Bid;
+import genius.core.Deadline;
+import genius.core.DeadlineType;
+import genius.core.Domain;
+import genius.core.DomainImpl;
+import genius.core.actions.Offer;
+import genius.core.issue.Issue;
+import genius.core.issue.Value;
+import genius.core.issue.ValueDiscrete;
+import genius.core.parties.NegotiationInfo;
+import genius.core.timeline.TimeLineInfo;
+import genius.core.uncertainty.BidRanking;
+import genius.core.uncertainty.UserModel;
+import genius.core.utility.AdditiveUtilitySpace;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * A real domain from etc/templates, the two profiles of the session and the stream of bids the opponent made.
+ * The stream is read from a Genius session log when one was recorded for the domain, otherwise it is generated
+ * by a seeded time-dependent opponent on its own profile.
+ */
+public class BenchmarkSession {
+    public static final int STREAM_LENGTH = 500;
+    private static final String TEMPLATES = "etc/templates/";
+
+    public final Domain domain;
+    public final AdditiveUtilitySpace ownSpace;
+    public final AdditiveUtilitySpace opponentSpace;
+    public final List<Bid> opponentBids;
+
+    private BenchmarkSession(String domainFile, String ownProfile, String opponentProfile, String log) throws Exception {
+        this.domain = new DomainImpl(TEMPLATES + domainFile);
+        this.ownSpace = new AdditiveUtilitySpace(this.domain, TEMPLATES + ownProfile);
+        this.opponentSpace = new AdditiveUtilitySpace(this.domain, TEMPLATES + opponentProfile);
+        this.opponentBids = log == null ? generateStream(new Random(13)) : readStream(log);
+    }
+
+    /**
+     * @param name one of party, university, car_purchase
+     * @return Session on the domain
+     */
+    public static BenchmarkSession load(String name) throws Exception {
+        switch (name) {
+            case "party":
+                return new BenchmarkSession("partydomain/party_domain.xml", "partydomain/party1_utility.xml",
+                        "partydomain/party2_utility.xml", "log/Log-Session_20191208-155823.csv");
+            case "university":
+                return new BenchmarkSession("ANAC2015/group1-university/University.xml",
+                        "ANAC2015/group1-university/University_util1.xml",
+                        "ANAC2015/group1-university/University_util2.xml", null);
+            case "car_purchase":
+                return new BenchmarkSession("ANAC2015/group11-car_purchase/car_purchase_domain.xml",
+                        "ANAC2015/group11-car_purchase/car_purchase_util1.xml",
+                        "ANAC2015/group11-car_purchase/car_purchase_util2.xml", null);
+            default:
+                throw new IllegalArgumentException("Unknown benchmark domain " + name);
+        }
+    }
+
+    /**
+     * Reads the offers that were not made by Agent13 in a Genius session log.
+     * A line looks like: round,turn,time,Agent@1,(Offer  bid:Bid[Issue1: value, Issue2: value])
+     */
+    private List<Bid> readStream(String log) throws IOException {
+        List<Bid> bids = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new FileReader(log))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int start = line.indexOf("bid:Bid[");
+                if (start < 0 || line.contains(",Agent13@"))
+                    continue;
+                bids.add(parseBid(line.substring(start + "bid:Bid[".length(), line.lastIndexOf(']'))));
+            }
+        }
+        return bids;
+    }
+
+    /**
+     * Values may contain commas, so each value runs until the name of the next issue.
+     */
+    private Bid parseBid(String text) {
+        List<Issue> issues = domain.getIssues();
+        HashMap<Integer, Value> values = new HashMap<>();
+        for (int i = 0; i < issues.size(); i++) {
+            int start = text.indexOf(issues.get(i).getName() + ": ") + issues.get(i).getName().length() + 2;
+            int end = i + 1 < issues.size() ? text.indexOf(", " + issues.get(i + 1).getName() + ": ", start) : text.length();
+            values.put(issues.get(i).getNumber(), new ValueDiscrete(text.substring(start, end)));
+        }
+        return new Bid(domain, values);
+    }
+
+    /**
+     * Boulware opponent: walks down its own sorted bids, conceding half of its range by the deadline.
+     */
+    private List<Bid> generateStream(Random random) {
+        List<Bid> candidates = new ArrayList<>();
+        for (int i = 0; i < 4 * STREAM_LENGTH; i++)
+            candidates.add(domain.getRandomBid(random));
+        candidates.sort(Comparator.comparingDouble(opponentSpace::getUtility).reversed());
+
+        List<Bid> bids = new ArrayList<>();
+        for (int k = 0; k < STREAM_LENGTH; k++) {
+            double t = (double) k / STREAM_LENGTH;
+            bids.add(candidates.get((int) (0.5 * Math.pow(t, 5) * (candidates.size() - 1))));
+        }
+        return bids;
+    }
+
+    /**
+     * @param size Number of bids in the ranking
+     * @param seed Seed of the sample
+     * @return Ranking of distinct random bids, ordered by the real own utility
+     */
+    public BidRanking ranking(int size, long seed) {
+        Random random = new Random(seed);
+        // distinct bids, as many as the domain has if it is smaller
+        Set<Bid> distinct = new LinkedHashSet<>();
+        long count = Math.min(size, domain.getNumberOfPossibleBids());
+        while (distinct.size() < count)
+            distinct.add(domain.getRandomBid(random));
+        List<Bid> bids = new ArrayList<>(distinct);
+        bids.sort(Comparator.comparingDouble(ownSpace::getUtility));
+        return new BidRanking(bids, ownSpace.getUtility(bids.get(0)), ownSpace.getUtility(bids.get(bids.size() - 1)));
+    }
+
+    /**
+     * Creates an agent on the session and feeds it the first offers of the opponent.
+     *
+     * @param rankingSize Size of the bid ranking, or 0 for no preference uncertainty
+     * @param timeline    Timeline the agent sees
+     * @param offers      Number of opponent offers received before returning
+     * @return Initialized agent
+     */
+    public Agent13 newAgent(int rankingSize, VirtualTimeline timeline, int offers) {
+        UserModel userModel = rankingSize == 0 ? null : new UserModel(ranking(rankingSize, 13));
+        NegotiationInfo info = new NegotiationInfo(ownSpace, userModel, null,
+                new Deadline(STREAM_LENGTH, DeadlineType.ROUND), timeline, 13, new AgentID("Agent13@bench"), null);
+
+        Agent13 agent = new Agent13();
+        agent.init(info);
+
+        AgentID opponent = new AgentID("Opponent@bench");
+        for (int i = 0; i < offers; i++)
+            agent.receiveMessage(opponent, new Offer(opponent, opponentBids.get(i % opponentBids.size())));
+        return agent;
+    }
+
+    public static VirtualTimeline timeline(double time) {
+        VirtualTimeline timeline = new VirtualTimeline(TimeLineInfo.Type.Rounds, STREAM_LENGTH);
+        timeline.setTime(time);
+        return timeline;
+    }
+}
@@ -0,0 +1,73 @@
+package group13;
+
+import genius.core.AgentID;
+import genius.core.Bid;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of scoring candidate sets of growing size against several opponent models, on both sides
+ * of the parallel threshold of the scorer.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BidScorerBenchmark {
+    @Param({"party", "car_purchase"})
+    public String domain;
+
+    @Param({"10", "1000", "10000"})
+    public int candidates;
+
+    @Param({"1", "4"})
+    public int opponents;
+
+    private BidScorer scorer;
+    private List<Bid> bids;
+    private OpponentModelManager models;
+    private EncodedUtilitySpace ownSpace;
+
+    @Setup
+    public void setup() throws Exception {
+        BenchmarkSession session = BenchmarkSession.load(domain);
+        BidEncoder encoder = new BidEncoder(session.domain);
+        ownSpace = new EncodedUtilitySpace(encoder, session.ownSpace);
+        scorer = new BidScorer(encoder);
+
+        Random random = new Random(13);
+        bids = new ArrayList<>(candidates);
+        for (int i = 0; i < candidates; i++)
+            bids.add(session.domain.getRandomBid(random));
+
+        // each opponent saw a different part of the recorded offers
+        models = new OpponentModelManager(encoder);
+        for (int o = 0; o < opponents; o++) {
+            AgentID sender = new AgentID("Opponent" + o + "@bench");
+            for (int i = o; i < session.opponentBids.size(); i += opponents)
+                models.update(sender, (double) i / session.opponentBids.size(), encoder.encode(session.opponentBids.get(i)), 0);
+        }
+    }
+
+    @Benchmark
+    public int score() {
+        scorer.score(bids, models, ownSpace, null, 0);
+        return scorer.getNash() + scorer.getBestForOpponents();
+    }
+}
@@ -0,0 +1,66 @@
+package group13;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of updating and querying the opponent models with the recorded offers of an opponent.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OpponentModelBenchmark {
+    @Param({"party", "university", "car_purchase"})
+    public String domain;
+
+    @Param({"frequency", "bayesian"})
+    public String kind;
+
+    private BidEncoder encoder;
+    private int[][] stream;
+    private OpponentModel model;
+    private int next;
+
+    @Setup
+    public void setup() throws Exception {
+        BenchmarkSession session = BenchmarkSession.load(domain);
+        encoder = new BidEncoder(session.domain);
+        stream = new int[session.opponentBids.size()][];
+        for (int i = 0; i < stream.length; i++)
+            stream[i] = encoder.encode(session.opponentBids.get(i));
+
+        model = kind.equals("bayesian") ? new BayesianOpponentModel(encoder) : new FrequencyOpponentModel(encoder);
+        for (int i = 0; i < stream.length; i++)
+            model.update(stream[i], (double) i / stream.length);
+    }
+
+    @Benchmark
+    public double update() {
+        int i = next++ % stream.length;
+        return model.update(stream[i], (double) i / stream.length);
+    }
+
+    @Benchmark
+    public double getValue() {
+        return model.getValue(stream[next++ % stream.length]);
+    }
+
+    @Benchmark
+    public double getValueOfBid() {
+        return model.getValue(encoder.decode(stream[next++ % stream.length]));
+    }
+}
@@ -0,0 +1,60 @@
+package group13;
+
+import genius.core.uncertainty.BidRanking;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of estimating the utility space from a bid ranking, with the LP and with the heuristic.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UncertaintyModellingBenchmark {
+    @Param({"party", "university", "car_purchase"})
+    public String domain;
+
+    @Param({"20", "100", "400"})
+    public int rankingSize;
+
+    @Param({"LP", "heuristic"})
+    public String method;
+
+    private BidEncoder encoder;
+    private BidRanking ranking;
+
+    @Setup
+    public void setup() throws Exception {
+        BenchmarkSession session = BenchmarkSession.load(domain);
+        encoder = new BidEncoder(session.domain);
+        ranking = session.ranking(rankingSize, 13);
+    }
+
+    @Benchmark
+    public UncertaintyModelling uncertaintyEstimation() {
+        UncertaintyModelling model = new UncertaintyModelling(encoder);
+        if (method.equals("LP")) {
+            model.setLPThreshold(Integer.MAX_VALUE);
+            // without deadline, so a slow solve is measured instead of falling back to the heuristic
+            model.setLPBudget(0);
+        } else {
+            model.setLPThreshold(0);
+        }
+        model.UncertaintyEstimation(ranking);
+        return model;
+    }
+}
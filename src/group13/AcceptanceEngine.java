@@ -0,0 +1,138 @@
+package group13;
+
+/**
+ * Decides whether Agent13 accepts the offer on the table.
+ * <p>
+ * The decision comes from one of the strategies:
+ * <ul>
+ * <li>THRESHOLD (default): the offer plus a bonus reaches our utility threshold</li>
+ * <li>NEXT (AC_next): the offer is worth at least our next offer</li>
+ * <li>TIME (AC_time): anything once the deadline is near</li>
+ * <li>COMBI_MAX_W (AC_combi MAX^W): AC_next, or, once the deadline is near, the offer is at least the best one
+ * received in the last window of time as long as the time left</li>
+ * <li>PREDICTIVE: AC_next, or the offer reaches our utility threshold and is at least the best offer expected in
+ * the rest of the negotiation</li>
+ * </ul>
+ * The strategy can be chosen with the system property group13.acceptance.
+ * Every received offer goes through {@link #addOffer(double, double)}, which does constant amortized work.
+ */
+public class AcceptanceEngine {
+    public enum Strategy {THRESHOLD, NEXT, TIME, COMBI_MAX_W, PREDICTIVE}
+
+    //added to the utility of the offer by the THRESHOLD strategy
+    public static final double THRESHOLD_BONUS = 0.1;
+    //time from which TIME accepts and COMBI_MAX_W looks at the past offers
+    public static final double ACCEPT_TIME = 0.98;
+    //offers needed before PREDICTIVE trusts its prediction
+    public static final int MIN_OFFERS = 10;
+
+    private final Strategy strategy;
+    //our utility of every received offer over time
+    private final ConcessionEstimator offers = new ConcessionEstimator();
+
+    //offers of decreasing utility in a ring buffer, the maximum of the window is at the head
+    private double[] windowTimes = new double[64];
+    private double[] windowUtilities = new double[64];
+    private int head;
+    private int windowSize;
+
+    /**
+     * @param strategy Strategy to follow
+     */
+    public AcceptanceEngine(Strategy strategy) {
+        this.strategy = strategy;
+    }
+
+    /**
+     * @return Strategy named by the group13.acceptance system property, THRESHOLD by default
+     */
+    public static Strategy getConfiguredStrategy() {
+        return Strategy.valueOf(System.getProperty("group13.acceptance", "threshold").toUpperCase());
+    }
+
+    /**
+     * Informs the engine of an offer received from any opponent.
+     *
+     * @param time    Normalized time
+     * @param utility Our utility of the offer
+     */
+    public void addOffer(double time, double utility) {
+        offers.add(time, utility);
+
+        // older offers worth less can no longer be the maximum of a window
+        while (windowSize > 0 && windowUtilities[(head + windowSize - 1) % windowUtilities.length] <= utility)
+            windowSize--;
+        if (windowSize == windowUtilities.length) {
+            double[] times = new double[windowSize * 2];
+            double[] utilities = new double[windowSize * 2];
+            for (int k = 0; k < windowSize; k++) {
+                times[k] = windowTimes[(head + k) % windowTimes.length];
+                utilities[k] = windowUtilities[(head + k) % windowUtilities.length];
+            }
+            windowTimes = times;
+            windowUtilities = utilities;
+            head = 0;
+        }
+        int tail = (head + windowSize) % windowUtilities.length;
+        windowTimes[tail] = time;
+        windowUtilities[tail] = utility;
+        windowSize++;
+    }
+
+    /**
+     * @param time        Normalized time
+     * @param offer       Our utility of the offer on the table
+     * @param nextOffer   Our utility of the offer we would make instead
+     * @param threshold   Our utility threshold at that time
+     * @return true to accept the offer
+     */
+    public boolean accept(double time, double offer, double nextOffer, double threshold) {
+        switch (strategy) {
+            case NEXT:
+                return offer >= nextOffer;
+            case TIME:
+                return time >= ACCEPT_TIME;
+            case COMBI_MAX_W:
+                return offer >= nextOffer || (time >= ACCEPT_TIME && offer >= getBestSince(2 * time - 1));
+            case PREDICTIVE:
+                // the prediction only decides among offers we would take anyway, never below the concession
+                return offer >= nextOffer
+                        || (offers.size() >= MIN_OFFERS && offer >= threshold && offer >= getExpectedBestOffer(time));
+            default:
+                return offer + THRESHOLD_BONUS >= threshold;
+        }
+    }
+
+    /**
+     * Windows must start at increasing times: the offers before the start are dropped.
+     *
+     * @param start Normalized time
+     * @return Best utility of the offers received from that time, -infinity if there are none
+     */
+    private double getBestSince(double start) {
+        while (windowSize > 0 && windowTimes[head] < start) {
+            head = (head + 1) % windowTimes.length;
+            windowSize--;
+        }
+        return windowSize == 0 ? Double.NEGATIVE_INFINITY : windowUtilities[head];
+    }
+
+    /**
+     * The offers left follow the trend of the offers so far, with their volatility around it; the best of n of them
+     * is expected about sqrt(2 ln n) deviations above the trend.
+     *
+     * @param time Normalized time
+     * @return Expected utility of the best offer still to come
+     */
+    public double getExpectedBestOffer(double time) {
+        if (time <= 0)
+            return 1;
+        double remaining = Math.max(1, offers.size() * (1 - time) / time);
+        double trend = Math.max(offers.predict(time), offers.predict(1));
+        return Math.min(1, trend + offers.getVolatility() * Math.sqrt(2 * Math.log(remaining)));
+    }
+
+    public Strategy getStrategy() {
+        return strategy;
+    }
+}
@@ -8,10 +8,13 @@ import genius.core.actions.Action;
 import genius.core.actions.Offer;
 import genius.core.parties.AbstractNegotiationParty;
 import genius.core.parties.NegotiationInfo;
+import genius.core.timeline.TimeLineInfo;
 import genius.core.uncertainty.BidRanking;
+import genius.core.utility.AbstractUtilitySpace;
 
 import java.io.FileDescriptor;
 import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.PrintStream;
 import java.util.*;
 
@@ -22,56 +25,212 @@ public class Agent13 extends AbstractNegotiationParty {
     private double worstBidUtility;
     private Bid lastReceivedOffer;
     private Bid myLastOffer;
-    private OpponentModel opponent;
-    private final Map<AgentID, OpponentModel> opponentsModels = new HashMap<>();
-    private double concessionRate = 0.2;
-    private final Random randomGenerator = new Random();
+    //best and worst bids of our utility, found once from the encoding of the domain
+    private Bid maxUtilityBid;
+    private Bid minUtilityBid;
+    //flat copy of our utility (the latest estimate under uncertainty), null if it is not additive
+    private EncodedUtilitySpace ownSpace;
+    private OpponentModelManager opponents;
+    private ConcessionEngine concession;
+    private AcceptanceEngine acceptance;
+    private Random randomGenerator;
     private UncertaintyModelling factory;
-    private List<Double> bidHistoryOpponent = new ArrayList<>();
-    private double worstRecievedBidUtility = 1;
-    private double bestReceivedBidUtility = 0;
-    private boolean opponentIsHardHeaded = false;
     private Domain domain;
+    private BidEncoder encoder;
+    //reused to encode bids in the scoring paths without allocating
+    private int[] encodedBid;
+    private BidIndex bidIndex;
+    private UtilityCache utilityCache;
+    //version of the estimate the utility cache, our extreme bids, the concession and the index follow, under uncertainty
+    private int utilityVersion;
+    private BidScorer scorer;
+    //frontier between our utility and the opponent models, rebuilt when a refined estimate was published
+    private FrontierCache frontier;
+    private int frontierVersion;
+    //share of the negotiation time the background refinement of the estimate may use
+    private final double estimationTimeShare = Double.parseDouble(System.getProperty("group13.estimationShare", "0.05"));
+    //off unless enabled with the group13.metrics system property
+    private MetricsSink metrics = MetricsSink.NONE;
+    //records the session for SessionReplay when the group13.record system property names a directory
+    private SessionRecorder recorder;
+    //computes the next offer while the opponents think, null if turned off with the group13.pipeline system property
+    private OfferPipeline pipeline;
+    //number of our turns, so an offer computed in the background is only used for the turn it was made for
+    private int turn;
+    //lowest predicted utility for the opponents of the offer computed in the background, when it was computed
+    private double speculativeScore;
+    //offers received while the offer was computed in the background, learned from once it is done
+    private final List<ReceivedOffer> deferredOffers = new ArrayList<>();
+    //change of the lowest predicted utility for the opponents over which the offer computed in the background is stale
+    private static final double STALE_TOLERANCE = 0.05;
+    //time each offer may take, from the pace of the rounds and the time left
+    private ComputeBudget budget;
+    //set by SessionReplay; also on while recording, so the session can be replayed with the same choices
+    private boolean deterministic;
+
+    /**
+     * Offer of an opponent, kept aside with the time it was received while the models are read in background.
+     */
+    private static final class ReceivedOffer {
+        private final AgentID sender;
+        private final Bid bid;
+        private final double time;
+
+        private ReceivedOffer(AgentID sender, Bid bid, double time) {
+            this.sender = sender;
+            this.bid = bid;
+            this.time = time;
+        }
+    }
 
     @Override
     public void init(NegotiationInfo info) {
         super.init(info);
+        // seeded by the session, so a negotiation can be run again with the same choices
+        this.randomGenerator = new Random(info.getRandomSeed());
 
         System.setOut(new PrintStream(new FileOutputStream(FileDescriptor.out)));
+        this.metrics = MetricsSink.fromProperties(getPartyId().getName() + "-" + System.currentTimeMillis());
         this.domain = getDomain();
-        this.opponent = new OpponentModel(this.domain);
+        // under uncertainty the index was built with the estimate
+        if (this.encoder == null) {
+            this.encoder = new BidEncoder(this.domain);
+        }
+        this.encodedBid = new int[this.encoder.getNumberOfIssues()];
+        this.opponents = new OpponentModelManager(this.encoder);
+        this.opponents.setProfiles(OpponentProfileStore.fromProperties(this.domain.getName(), this.encoder));
+        this.utilityCache = new UtilityCache(this.encoder, this.utilitySpace);
+        this.scorer = new BidScorer(this.encoder);
+        this.ownSpace = EncodedUtilitySpace.of(this.encoder, this.utilitySpace);
+        this.maxUtilityBid = findExtremeBid(true);
+        this.minUtilityBid = findExtremeBid(false);
+        if (hasPreferenceUncertainty()) {
+            this.utilityVersion = this.factory.getEstimateVersion();
+        }
+        updateBidUtilities();
+        this.concession = new ConcessionEngine(ConcessionEngine.getConfiguredStrategy(), bestBidUtility, worstBidUtility);
+        this.acceptance = new AcceptanceEngine(AcceptanceEngine.getConfiguredStrategy());
+        this.bidIndex = new BidIndex(this.encoder, this.utilitySpace, getMaxUtilityBid(), randomGenerator);
+        if (hasPreferenceUncertainty()) {
+            this.frontier = new FrontierCache(this.factory.getEncodedUtilitySpace(), randomGenerator);
+            this.frontierVersion = this.factory.getEstimateVersion();
+        } else if (this.ownSpace != null) {
+            this.frontier = new FrontierCache(this.ownSpace, randomGenerator);
+        }
+
+        this.budget = new ComputeBudget(getTimeLine(), isDeterministic());
+        this.pipeline = OfferPipeline.fromProperties("group13-pipeline-" + getPartyId().getName());
+
+        String recordDirectory = System.getProperty("group13.record");
+        if (recordDirectory != null) {
+            try {
+                this.recorder = new SessionRecorder(recordDirectory + "/Agent13-" + getPartyId().getName() + "-" + System.currentTimeMillis() + ".bin",
+                        this.encoder, this.domain.getName(), info.getUtilitySpace().getFileName(), getTimeLine(),
+                        info.getRandomSeed(), hasPreferenceUncertainty() ? userModel.getBidRanking() : null);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+
+    }
+
+    /**
+     * Our utility is estimated on the encoding of the domain, which also covers integer and real issues, where the
+     * factory of Genius only has evaluators for discrete ones. Called by Genius in init, under uncertainty.
+     * @return : utility space that always evaluates the latest estimate
+     */
+    @Override
+    public AbstractUtilitySpace estimateUtilitySpace() {
+        this.encoder = new BidEncoder(getDomain());
+        this.factory = new UncertaintyModelling(this.encoder);
+        if (isDeterministic()) {
+            // the refined estimate would land at a turn that depends on the clock
+            this.factory.setLPBudget(0);
+            this.factory.UncertaintyEstimation(userModel.getBidRanking());
+        } else {
+            this.factory.UncertaintyEstimationAnytime(userModel.getBidRanking(), getEstimationBudget());
+        }
+        return this.factory.getEstimatedUtilitySpace();
+    }
+
+    /**
+     * Makes the choices of the agent depend only on what it receives, its seed and the virtual time, not on the
+     * clock: the estimate is computed at once, without deadline, and every offer gets the same work.
+     * Must be called before init.
+     */
+    void setDeterministic() {
+        this.deterministic = true;
+    }
+
+    private boolean isDeterministic() {
+        return deterministic || System.getProperty("group13.record") != null;
+    }
+
+    /**
+     * Sets the utilities of our best and worst bids, the ends of the ranking under uncertainty.
+     */
+    private void updateBidUtilities(){
         if (hasPreferenceUncertainty()) {
-            this.factory = new UncertaintyModelling(this.domain);
             BidRanking bidRanking = userModel.getBidRanking();
-            Bid worstBid = bidRanking.getMinimalBid();
-            worstBidUtility = this.utilitySpace.getUtility(worstBid);
-            Bid bestBid = bidRanking.getMaximalBid();
-            bestBidUtility = this.utilitySpace.getUtility(bestBid);
-            this.factory.UncertaintyEstimation(bidRanking);
+            worstBidUtility = this.utilityCache.getUtility(bidRanking.getMinimalBid());
+            bestBidUtility = this.utilityCache.getUtility(bidRanking.getMaximalBid());
+        } else {
+            bestBidUtility = this.utilityCache.getUtility(getMaxUtilityBid());
+            worstBidUtility = this.utilityCache.getUtility(getMinUtilityBid());
         }
+    }
 
+    /**
+     * Rebuilds what init built from our utility when a refined estimate was published, so the offers follow it:
+     * the utility cache, the flat copy of the estimate, our extreme bids, the range of the concession and the order
+     * of the index.
+     */
+    private void refreshEstimate(){
+        if(!hasPreferenceUncertainty() || this.factory.getEstimateVersion() == utilityVersion){
+            return;
+        }
+        this.utilityVersion = this.factory.getEstimateVersion();
+        this.utilityCache = new UtilityCache(this.encoder, this.utilitySpace);
+        this.ownSpace = EncodedUtilitySpace.of(this.encoder, this.utilitySpace);
+        this.maxUtilityBid = findExtremeBid(true);
+        this.minUtilityBid = findExtremeBid(false);
+        updateBidUtilities();
+        this.concession.setBounds(bestBidUtility, worstBidUtility);
+        this.bidIndex.rescore(this.utilitySpace);
     }
 
     /**
-     * @param bid: take in the current bid
-     * @return return score for opponent using opponent modelling
+     * @return time in milliseconds the estimation may take in background
      */
-    private double getOpponentScore(Bid bid){
-        double score = 0;
-        for(OpponentModel model : opponentsModels.values()){
-            score += model.getValue(bid);
+    private long getEstimationBudget(){
+        if(getTimeLine().getType() == TimeLineInfo.Type.Time){
+            return (long) (estimationTimeShare * getTimeLine().getTotalTime() * 1000);
         }
-        return score;
+        // with a rounds deadline there is no clock to take a share of
+        return 1000;
     }
 
+    /**
+     * @return frontier brought up to date with the opponent models, null if our utility is not additive
+     */
+    private FrontierCache getFrontier(){
+        if(hasPreferenceUncertainty() && this.factory.getEstimateVersion() != frontierVersion){
+            frontier = new FrontierCache(this.factory.getEncodedUtilitySpace(), randomGenerator);
+            frontierVersion = this.factory.getEstimateVersion();
+        }
+        if(frontier != null){
+            frontier.update(this.opponents);
+        }
+        return frontier;
+    }
 
     /**
      * @param threshold : utility threshold for this to be more than utility
      * @param noOfBids : number of bids to generate
-     * @param limit : limit for iterations
      * @return : Set of bids that's higher than threshold
      */
-    public Set<Bid> generateBids(double threshold, int noOfBids, int limit){
+    public Set<Bid> generateBids(double threshold, int noOfBids){
+        long start = metrics.isEnabled() ? System.nanoTime() : 0;
         Set<Bid> result = new HashSet<>();
         result.add(this.getMaxUtilityBid()); // propose the best bid
 
@@ -79,25 +238,16 @@ public class Agent13 extends AbstractNegotiationParty {
             return  result;
         }
 
-        // stop if we spend 1/10 of allowed time without finding anything
-        int deadLimit = limit/10;
-        int count = 0;
-        int limitCount = 0;
-
-        do{
-            Bid randomBid = generateRandomBid();
-            double percent_diff = (this.utilitySpace.getUtility(myLastOffer) - this.utilitySpace.getUtility(randomBid))/this.utilitySpace.getUtility(myLastOffer);
-
-            if(this.utilitySpace.getUtility(randomBid)>= threshold && percent_diff < 0.1){
-                if(!result.contains(randomBid)){
-                    deadLimit -= 1;
-                }
-                result.add(randomBid);
-            }
-            count++;
-            limitCount++;
-        } while (result.size() < noOfBids && count < limit && limitCount < deadLimit);
+        // bids above the threshold, less than 10% below our last offer
+        double lowerUtility = Math.max(threshold, 0.9 * this.utilityCache.getUtility(myLastOffer));
+        result.addAll(this.bidIndex.getBids(lowerUtility, Double.POSITIVE_INFINITY, noOfBids - 1, randomGenerator));
 
+        if(metrics.isEnabled()){
+            double time = getTimeLine().getTime();
+            metrics.record(MetricsSink.Metric.GENERATE_BIDS_NANOS, time, System.nanoTime() - start);
+            metrics.record(MetricsSink.Metric.CANDIDATES, time, result.size());
+            metrics.record(MetricsSink.Metric.UTILITY_CACHE_HIT_RATE, time, this.utilityCache.getHitRate());
+        }
         return result;
     }
 
@@ -108,73 +258,89 @@ public class Agent13 extends AbstractNegotiationParty {
      */
     @Override
     public Action chooseAction(List<Class<? extends Action>> list) {
-        List <Double> lastNOpponentBids;
-        int n = 15;
+        // waiting for the offer computed in the background is our time, not the time of the others
+        double actionStart = getTimeLine().getTime();
+        // the offer computed in the background reads the same state
+        if(pipeline != null){
+            pipeline.await();
+        }
+        budget.startAction(actionStart);
+        refreshEstimate();
+        learnDeferredOffers();
+        double time = getTimeLine().getTime();
+        Action action = measuredAction(list);
+        if(recorder != null){
+            recorder.recordChoose(time, action);
+        }
+        // the next offer is computed while the opponents think about this action
+        this.turn++;
+        // before the background computation starts, since it reads the budget
+        budget.endAction();
+        speculate(time);
+        return action;
+    }
+
+    private Action measuredAction(List<Class<? extends Action>> list) {
+        if(!metrics.isEnabled()){
+            return decideAction(list);
+        }
+
+        long start = System.nanoTime();
+        Action action = decideAction(list);
+        double time = getTimeLine().getTime();
+        metrics.record(MetricsSink.Metric.CHOOSE_ACTION_NANOS, time, System.nanoTime() - start);
+        metrics.record(MetricsSink.Metric.UTILITY_THRESHOLD, time, getUtilityThreshold());
+        metrics.record(MetricsSink.Metric.CONCESSION_RATE, time, concession.getConcessionRate());
+        return action;
+    }
+
+    private Action decideAction(List<Class<? extends Action>> list) {
         // According to Stacked Alternating Offers Protocol list includes
         // Accept, Offer and EndNegotiation actions only.
         double time = getTimeLine().getTime(); // Gets the time, running from t = 0 (start) to t = 1 (deadline).
         // The time is normalized, so agents need not be
         // concerned with the actual internal clock.
 
-        if (time > 0.85 && time < 0.89 && (bestReceivedBidUtility - worstRecievedBidUtility) <= 0.3) {
-            opponentIsHardHeaded = true;
-            concessionRate = 0.04;
-        }else if(time > 0.85 && time < 0.89 && (bestReceivedBidUtility - worstRecievedBidUtility) > 0.4){
-            concessionRate = 0.02; // let them conceed
+        // the most stubborn opponent decides
+        double receivedRange = this.opponents.getMinReceivedRange();
+        if (concession.update(time, receivedRange, this.opponents.getMinOwnSlope()) && metrics.isEnabled()) {
+            metrics.record(MetricsSink.Metric.HARD_HEADED, time, receivedRange);
         }
+        boolean opponentIsHardHeaded = concession.isOpponentHardHeaded();
 
-        // First 20% of the negotiation offering the max utility (the best agreement possible) for Example Agent
-        if (time < 0.2 || this.opponent.numberOfBids < 10) {
+        // First 20% of the negotiation offering the max utility (the best agreement possible) for Example Agent,
+        // less when the opponents are known from earlier negotiations
+        if (isLearning(time)) {
             this.myLastOffer = this.getMaxUtilityBid();
             return new Offer(this.getPartyId(), myLastOffer);
         } else {
             try {
-                double myUtility = this.utilitySpace.getUtility(lastReceivedOffer) + 0.1;
+                double offerUtility = this.utilityCache.getUtility(lastReceivedOffer);
                 double utilityThreshold = getUtilityThreshold();
                 if (time > 0.7 && lastReceivedOffer != null && opponentIsHardHeaded){
-                    double theirUtility = this.opponent.getValue(lastReceivedOffer);
-                    try{
-                        if(bidHistoryOpponent.size() > n+1){
-                            lastNOpponentBids = bidHistoryOpponent.subList(bidHistoryOpponent.size() - n+1, bidHistoryOpponent.size() - 2);
-                        } else {
-                            lastNOpponentBids = bidHistoryOpponent.subList(0, bidHistoryOpponent.size() - 2);
-                        }
-                    } catch (Exception e){
-                        lastNOpponentBids = bidHistoryOpponent;
-                    }
-
-                    boolean suddenDecrease = detectSuddenChange(lastNOpponentBids, theirUtility, 3, "lower");
-                    if (suddenDecrease && (myUtility >= utilityThreshold)){
+                    // utility of the offer on the table for the opponent that made it, against its previous offers
+                    int sender = this.opponents.getLastSender();
+                    double theirUtility = this.opponents.getValue(sender, this.encoder.encode(lastReceivedOffer, this.encodedBid));
+                    boolean suddenDecrease = this.opponents.getTheirTrend(sender).isSuddenDecrease(theirUtility, 3);
+                    if (suddenDecrease && (offerUtility + 0.1 >= utilityThreshold)){
                         return new Offer(this.getPartyId(), lastReceivedOffer);
                     }
 
                 }
 
-                // Accepts the bid on the table in this phase,
-                // if the utility of the bid is higher than Example Agent's last bid.
+                // our next offer is needed by the acceptance strategies that compare with it
+                Bid nextOffer = takeSpeculativeOffer(time, utilityThreshold);
+                if (nextOffer == null) {
+                    nextOffer = chooseOffer(utilityThreshold);
+                }
                 if (lastReceivedOffer != null
                         && myLastOffer != null
-                        && myUtility  >= utilityThreshold) {
+                        && acceptance.accept(time, offerUtility, this.utilityCache.getUtility(nextOffer), utilityThreshold)) {
                     return new Accept(this.getPartyId(), lastReceivedOffer);
                 }
 
-
-                // Generate random bids above threshold
-                Set<Bid> bidSet = this.generateBids(utilityThreshold, 10, 1000);
-
-                if(randomGenerator.nextDouble() <= 0.01) {
-                    this.myLastOffer =  pickRandomBid(bidSet);
-                    return new Offer(this.getPartyId(),this.myLastOffer);
-                } else {
-                    // from bidset, compare and get the best one
-                    Bid randomBid = Collections.max(bidSet, Comparator.comparingDouble(this::getOpponentScore));
-                    Bid nashBid = getNash(bidSet);
-                    double randomBidUtility = this.utilitySpace.getUtility(randomBid);
-                    double nashBidUtility = this.utilitySpace.getUtility(nashBid);
-                    Bid bestBid = randomBidUtility > nashBidUtility ? randomBid : nashBid; // best bid is whatever is higher
-                    this.myLastOffer = bestBid;
-                    return new Offer(this.getPartyId(), bestBid);
-                }
+                this.myLastOffer = nextOffer;
+                return new Offer(this.getPartyId(), nextOffer);
             } catch (Exception e){
                 this.myLastOffer = this.getMaxUtilityBid();
                 return new Offer(this.getPartyId(), this.myLastOffer);
@@ -183,6 +349,60 @@ public class Agent13 extends AbstractNegotiationParty {
         }
     }
 
+    /**
+     * @param time : normalized time
+     * @return : true while we only offer our best bid and learn from the opponents
+     */
+    private boolean isLearning(double time){
+        boolean knownOpponents = this.opponents.hasPriors();
+        return time < (knownOpponents ? 0.05 : 0.2) || this.opponents.getNumberOfBids() < (knownOpponents ? 2 : 10);
+    }
+
+    /**
+     * The offer computed in the background used the threshold and the opponent models of the end of our last turn;
+     * it is still good if it is worth the threshold of now, and the offers received since did not move its predicted
+     * utility for the opponents by more than {@link #STALE_TOLERANCE}.
+     * @param time : normalized time
+     * @param utilityThreshold : utility threshold at this time
+     * @return : the offer computed in the background for this turn, null if there is none or it is not good anymore
+     */
+    private Bid takeSpeculativeOffer(double time, double utilityThreshold){
+        if(pipeline == null){
+            return null;
+        }
+        Bid offer = pipeline.take(this.turn);
+        boolean hit = offer != null && this.utilityCache.getUtility(offer) >= utilityThreshold
+                && Math.abs(getOpponentsScore(offer) - this.speculativeScore) <= STALE_TOLERANCE;
+        if(metrics.isEnabled()){
+            metrics.record(MetricsSink.Metric.SPECULATION_HIT, time, hit ? 1 : 0);
+        }
+        return hit ? offer : null;
+    }
+
+    /**
+     * Starts computing our next offer in the background, with the threshold of now.
+     * @param time : normalized time
+     */
+    private void speculate(double time){
+        if(pipeline == null || isLearning(time)){
+            return;
+        }
+        double utilityThreshold = getUtilityThreshold();
+        pipeline.submit(this.turn, () -> {
+            Bid offer = chooseOffer(utilityThreshold);
+            this.speculativeScore = getOpponentsScore(offer);
+            return offer;
+        });
+    }
+
+    /**
+     * @param bid : bid
+     * @return : lowest predicted utility of the bid among the opponents
+     */
+    private double getOpponentsScore(Bid bid){
+        return this.opponents.getMin(this.encoder.encode(bid, this.encodedBid));
+    }
+
     /**
      * This method is called to inform the party that another NegotiationParty chose an Action.
      * @param sender : opponent Agent ID
@@ -190,32 +410,77 @@ public class Agent13 extends AbstractNegotiationParty {
      */
     @Override
     public void receiveMessage(AgentID sender, Action act) {
+        long start = metrics.isEnabled() ? System.nanoTime() : 0;
         super.receiveMessage(sender, act);
+        double time = getTimeLine().getTime();
+        if(recorder != null){
+            recorder.recordReceive(time, sender, act);
+        }
 
         if (act instanceof Offer) { // sender is making an offer
-            Offer offer = (Offer) act;
-            lastReceivedOffer = offer.getBid();
-            double time = getTimeLine().getTime();
+            Bid bid = ((Offer) act).getBid();
+            // the offer being computed in the background reads the models: the offer is learned from once it is done
+            if(pipeline != null && pipeline.isBusy()){
+                deferredOffers.add(new ReceivedOffer(sender, bid, time));
+            } else {
+                if(pipeline != null){
+                    pipeline.await();
+                }
+                refreshEstimate();
+                learnDeferredOffers();
+                learnOffer(sender, bid, time);
+            }
+        }
 
-            double bidUtility = this.utilitySpace.getUtility(lastReceivedOffer);
+        if(metrics.isEnabled()){
+            metrics.record(MetricsSink.Metric.RECEIVE_MESSAGE_NANOS, getTimeLine().getTime(), System.nanoTime() - start);
+        }
+    }
 
+    /**
+     * Learns from the offers received while the offer was computed in the background, in the order they came.
+     */
+    private void learnDeferredOffers(){
+        for(ReceivedOffer offer : deferredOffers){
+            learnOffer(offer.sender, offer.bid, offer.time);
+        }
+        deferredOffers.clear();
+    }
+
+    /**
+     * @param sender : opponent Agent ID
+     * @param bid : their offer
+     * @param time : normalized time the offer was received
+     */
+    private void learnOffer(AgentID sender, Bid bid, double time){
+        lastReceivedOffer = bid;
 
-            if(bidUtility > bestReceivedBidUtility) bestReceivedBidUtility = bidUtility;
-            if(bidUtility < worstRecievedBidUtility) worstRecievedBidUtility = bidUtility;
+        double bidUtility = this.utilityCache.getUtility(lastReceivedOffer);
 
-            //If time is close to deadline don't update opponent model because it might take too long
-            if(time < 0.95){
-                opponentsModels.putIfAbsent(sender, new OpponentModel(getDomain()));
-                opponentsModels.get(sender).updateFrequency(offer.getBid());
-                this.opponent.updateFrequency(offer.getBid());
-            }
+        acceptance.addOffer(time, bidUtility);
 
-            // storing last received offer
-            if(time > 0.65){
-                bidHistoryOpponent.add(this.opponent.getValue(lastReceivedOffer));
-            }
+        // updates are constant time per issue, so the model keeps learning up to the deadline
+        long updateStart = metrics.isEnabled() ? System.nanoTime() : 0;
+        int[] encoded = this.encoder.encode(lastReceivedOffer, this.encodedBid);
+        this.opponents.update(sender, time, encoded, bidUtility);
+        if(metrics.isEnabled()){
+            metrics.record(MetricsSink.Metric.OPPONENT_UPDATE_NANOS, time, System.nanoTime() - updateStart);
+        }
+    }
 
+    @Override
+    public Map<String, String> negotiationEnded(Bid acceptedBid) {
+        if(pipeline != null){
+            pipeline.close();
+        }
+        // what was learned in the last turn is saved with the profiles
+        learnDeferredOffers();
+        metrics.close();
+        this.opponents.saveProfiles();
+        if(recorder != null){
+            recorder.close();
         }
+        return super.negotiationEnded(acceptedBid);
     }
 
     @Override
@@ -224,8 +489,27 @@ public class Agent13 extends AbstractNegotiationParty {
     }
 
     private Bid getMaxUtilityBid() {
+        return this.maxUtilityBid;
+    }
+
+
+    private Bid getMinUtilityBid() {
+        return this.minUtilityBid;
+    }
+
+    /**
+     * Additive utilities are maximized issue by issue on the encoding, which also covers integer and real issues;
+     * other utility spaces are searched by Genius.
+     * @param max : true for the best bid, false for the worst one
+     * @return : the bid, null if it cannot be found
+     */
+    private Bid findExtremeBid(boolean max) {
+        if (this.ownSpace != null) {
+            int[] encoded = new int[this.encoder.getNumberOfIssues()];
+            return this.encoder.decode(max ? this.ownSpace.getMaxUtilityBid(encoded) : this.ownSpace.getMinUtilityBid(encoded));
+        }
         try {
-            return this.utilitySpace.getMaxUtilityBid();
+            return max ? this.utilitySpace.getMaxUtilityBid() : this.utilitySpace.getMinUtilityBid();
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -235,60 +519,86 @@ public class Agent13 extends AbstractNegotiationParty {
 
     // get utility threshold according to the paper
     public double getUtilityThreshold(){
-        return bestBidUtility - (bestBidUtility - worstBidUtility) * Math.pow(getTimeLine().getTime(), 1 / concessionRate);
+        return concession.getThreshold(getTimeLine().getTime());
     }
 
 
     /**
-     * @param lstDoubles : get a list of doubles
-     * @return : standard deviation of the list
+     * @param utilityThreshold : utility threshold at this time
+     * @return : the bid we would offer now
      */
-    public double[] getStandardDeviation(List<Double> lstDoubles){
-        double [] ret = {0.0, 0.0};
-        double sum = 0.0, standardDeviation = 0.0;
-        int length = lstDoubles.size();
-        for(double num : lstDoubles) {
-            sum += num;
+    private Bid chooseOffer(double utilityThreshold){
+        budget.startTurn();
+        if(metrics.isEnabled()){
+            metrics.record(MetricsSink.Metric.TURN_BUDGET_NANOS, getTimeLine().getTime(), budget.getBudget());
         }
-        double mean = sum/length;
-        for(double num: lstDoubles) {
-            standardDeviation += Math.pow(num - mean, 2);
+        // the frontier follows the opponent models if there is time for it, otherwise the last one is used
+        FrontierCache pareto = this.frontier;
+        if(budget.canUpdateFrontier()){
+            long frontierStart = System.nanoTime();
+            pareto = getFrontier();
+            budget.recordFrontier(System.nanoTime() - frontierStart);
         }
-        ret[0] = mean;
-        ret[1] = Math.sqrt(standardDeviation/length);
-
-        return ret;
-    }
 
+        // Generate random bids above threshold, as many as the rest of the turn can score
+        long bidsStart = System.nanoTime();
+        Set<Bid> bidSet = this.generateBids(utilityThreshold, budget.getNumberOfBids());
 
-    public  boolean detectSuddenChange(List<Double> arr, double val, int n, String bound){
-        double [] std = getStandardDeviation(arr);
-        double sigN = std[1] * n; // std * n
+        // with the frontier bids closest to the opponents and at the Nash solution, if they are above threshold
+        if(pareto != null && this.opponents.size() > 0){
+            int above = pareto.getAbove(utilityThreshold);
+            if(above >= 0){
+                bidSet.add(this.encoder.decode(pareto.getBid(above, this.encodedBid)));
+            }
+            int nash = pareto.getNash(getOwnReservationValue());
+            if(nash >= 0 && pareto.getOwnUtility(nash) >= utilityThreshold){
+                bidSet.add(this.encoder.decode(pareto.getBid(nash, this.encodedBid)));
+            }
+        }
 
-        if (bound.equals("upper")){
-            return val >= (sigN + std[0]); // 3sig + mean
+        if(randomGenerator.nextDouble() <= 0.01) {
+            return pickRandomBid(bidSet);
         }
-        return val <=(- sigN + std[0]); // 3sig - mean
+        // from bidset, compare and get the best one
+        scoreBids(bidSet);
+        budget.recordBids(bidSet.size(), System.nanoTime() - bidsStart);
+        Bid randomBid = scorer.getBid(scorer.getBestForOpponents());
+        Bid nashBid = scorer.getBid(scorer.getNash());
+        double randomBidUtility = this.utilityCache.getUtility(randomBid);
+        double nashBidUtility = this.utilityCache.getUtility(nashBid);
+        return randomBidUtility > nashBidUtility ? randomBid : nashBid; // best bid is whatever is higher
     }
 
     public Bid pickRandomBid(Set<Bid> bidSet){
         List<Bid> list = new ArrayList<Bid>(bidSet.size());
         list.addAll(bidSet);
-        Collections.shuffle(list);
+        Collections.shuffle(list, randomGenerator);
         return list.get(0);
     }
 
     public Bid getNash(Set <Bid> bids) {
-        double reservationValue = this.factory.getUtilitySpace().getReservationValue();
-        double bestUtility = 0.0;
-        Bid nash = bids.iterator().next();
-        for(Bid bid: bids) {
-            double utility = (this.opponent.getValue(bid) - reservationValue) * (this.factory.getUtilitySpace().getUtility(bid) - reservationValue);
-            if(utility > bestUtility) {
-                bestUtility = utility;
-                nash = bid;
-            }
+        scoreBids(bids);
+        return scorer.getBid(scorer.getNash());
+    }
+
+    /**
+     * Scores the bids against every opponent model and the Nash product in one pass.
+     * Our utility is the estimated one under uncertainty, the real one otherwise.
+     * @param bids : candidate bids
+     */
+    private void scoreBids(Collection<Bid> bids){
+        if(hasPreferenceUncertainty()){
+            // the estimate is evaluated directly on the encoding, so it needs no cache
+            scorer.score(bids, this.opponents, this.factory.getEncodedUtilitySpace(), null, getOwnReservationValue());
+        } else {
+            scorer.score(bids, this.opponents, null, this.utilityCache, getOwnReservationValue());
         }
-        return nash;
+    }
+
+    /**
+     * @return reservation value of our utility space, the estimated one under uncertainty
+     */
+    private double getOwnReservationValue(){
+        return this.utilitySpace.getReservationValue();
     }
 }
@@ -0,0 +1,286 @@
+package group13;
+
+import genius.core.Bid;
+import genius.core.Domain;
+import genius.core.DomainImpl;
+import genius.core.uncertainty.BidRanking;
+import genius.core.utility.AdditiveUtilitySpace;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Estimates many bid rankings of the same domain at once, to measure how well {@link UncertaintyModelling}
+ * recovers the profiles they come from.
+ * <p>
+ * The rankings share the index of the domain and the encoding of their bids, each distinct bid being encoded once,
+ * and are estimated in parallel, each in its own utility space. Every estimate is compared with its real profile on
+ * a common set of bids by rank correlation, Spearman's rho and Kendall's tau-b, since a ranking only tells the
+ * order of the bids. The linear programming runs without deadline, since the estimations share the cores: with a
+ * deadline, whether it finishes would depend on how many run at the same time.
+ * <p>
+ * Usage: BatchEstimator [domain] [ranking size] [rankings per profile] [threads] [profile...]
+ * (defaults: etc/templates/partydomain/party_domain.xml, 100, 10, number of cores, the other files of the directory
+ * of the domain)
+ */
+public class BatchEstimator {
+    //bids the estimates are compared on: the whole domain if it is smaller, a sample otherwise
+    public static final int EVALUATION_BIDS = 2000;
+
+    /**
+     * Estimate of a ranking and how it compares with the real profile.
+     */
+    public static class Result {
+        public final EncodedUtilitySpace estimate;
+        public final double spearman;
+        public final double kendall;
+        //time the estimation took, without the comparison
+        public final long nanos;
+
+        Result(EncodedUtilitySpace estimate, double spearman, double kendall, long nanos) {
+            this.estimate = estimate;
+            this.spearman = spearman;
+            this.kendall = kendall;
+            this.nanos = nanos;
+        }
+    }
+
+    private final BidEncoder encoder;
+    private final int threads;
+    //encoded bids the estimates are compared on
+    private final int[][] evaluationBids;
+
+    /**
+     * @param encoder Index of the domain, shared by every estimation
+     * @param threads Number of estimations run at the same time
+     * @param random  Generator used to sample the bids of comparison in bigger domains
+     */
+    public BatchEstimator(BidEncoder encoder, int threads, Random random) {
+        this.encoder = encoder;
+        this.threads = threads;
+
+        long total = encoder.getNumberOfBids();
+        boolean enumerate = total <= EVALUATION_BIDS;
+        this.evaluationBids = new int[enumerate ? (int) total : EVALUATION_BIDS][];
+        for (int b = 0; b < this.evaluationBids.length; b++) {
+            int[] bid = new int[encoder.getNumberOfIssues()];
+            if (enumerate) {
+                encoder.unpack(b, bid);
+            } else {
+                for (int i = 0; i < bid.length; i++)
+                    bid[i] = random.nextInt(encoder.getNumberOfValues(i));
+            }
+            this.evaluationBids[b] = bid;
+        }
+    }
+
+    /**
+     * Estimates every ranking in parallel and compares it with its profile.
+     *
+     * @param rankings Rankings of bids of the domain
+     * @param profiles Real profile of each ranking, in the same order
+     * @return Result of each ranking, in the same order
+     */
+    public List<Result> estimate(List<BidRanking> rankings, List<EncodedUtilitySpace> profiles)
+            throws InterruptedException, ExecutionException {
+        // bids shared by several rankings are encoded once; the estimations only read the arrays
+        Map<Bid, int[]> encoded = new HashMap<>();
+        List<Callable<Result>> tasks = new ArrayList<>(rankings.size());
+        for (int r = 0; r < rankings.size(); r++) {
+            BidRanking ranking = rankings.get(r);
+            List<Bid> bids = ranking.getBidOrder();
+            int[][] order = new int[bids.size()][];
+            for (int k = 0; k < order.length; k++)
+                order[k] = encoded.computeIfAbsent(bids.get(k), encoder::encode);
+            EncodedUtilitySpace profile = profiles.get(r);
+            tasks.add(() -> estimate(order, ranking.getLowUtility(), ranking.getHighUtility(), profile));
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "group13-estimation");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Result> results = new ArrayList<>(tasks.size());
+            for (Future<Result> result : pool.invokeAll(tasks))
+                results.add(result.get());
+            return results;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private Result estimate(int[][] ranking, double lowUtility, double highUtility, EncodedUtilitySpace profile) {
+        long start = System.nanoTime();
+        UncertaintyModelling model = new UncertaintyModelling(encoder);
+        model.setLPBudget(0);
+        model.UncertaintyEstimation(ranking, lowUtility, highUtility);
+        long nanos = System.nanoTime() - start;
+
+        EncodedUtilitySpace estimate = model.getEncodedUtilitySpace();
+        double[] real = new double[evaluationBids.length];
+        double[] estimated = new double[evaluationBids.length];
+        for (int b = 0; b < evaluationBids.length; b++) {
+            real[b] = profile.getUtility(evaluationBids[b]);
+            estimated[b] = estimate.getUtility(evaluationBids[b]);
+        }
+        return new Result(estimate, spearman(real, estimated), kendall(real, estimated), nanos);
+    }
+
+    /**
+     * @return Rank of each value, from 1; equal values share the mean of their ranks
+     */
+    private static double[] ranks(double[] values) {
+        Integer[] order = new Integer[values.length];
+        for (int k = 0; k < order.length; k++)
+            order[k] = k;
+        Arrays.sort(order, Comparator.comparingDouble(k -> values[k]));
+
+        double[] ranks = new double[values.length];
+        for (int first = 0; first < order.length; ) {
+            int last = first;
+            while (last + 1 < order.length && values[order[last + 1]] == values[order[first]])
+                last++;
+            for (int k = first; k <= last; k++)
+                ranks[order[k]] = (first + last) / 2.0 + 1;
+            first = last + 1;
+        }
+        return ranks;
+    }
+
+    /**
+     * @return Spearman's rho: Pearson correlation of the ranks, 0 if either side is constant
+     */
+    static double spearman(double[] x, double[] y) {
+        double[] rx = ranks(x), ry = ranks(y);
+        double mean = (x.length + 1) / 2.0;
+        double covariance = 0, vx = 0, vy = 0;
+        for (int k = 0; k < x.length; k++) {
+            covariance += (rx[k] - mean) * (ry[k] - mean);
+            vx += (rx[k] - mean) * (rx[k] - mean);
+            vy += (ry[k] - mean) * (ry[k] - mean);
+        }
+        return vx == 0 || vy == 0 ? 0 : covariance / Math.sqrt(vx * vy);
+    }
+
+    /**
+     * @return Kendall's tau-b: concordant minus discordant pairs, corrected for ties, 0 if either side is constant
+     */
+    static double kendall(double[] x, double[] y) {
+        long concordant = 0, discordant = 0, tiesX = 0, tiesY = 0;
+        for (int a = 0; a < x.length; a++) {
+            for (int b = a + 1; b < x.length; b++) {
+                int sx = Double.compare(x[a], x[b]), sy = Double.compare(y[a], y[b]);
+                if (sx == 0)
+                    tiesX++;
+                if (sy == 0)
+                    tiesY++;
+                if (sx != 0 && sy != 0) {
+                    if (sx == sy)
+                        concordant++;
+                    else
+                        discordant++;
+                }
+            }
+        }
+        long pairs = (long) x.length * (x.length - 1) / 2;
+        double denominator = Math.sqrt((double) (pairs - tiesX) * (pairs - tiesY));
+        return denominator == 0 ? 0 : (concordant - discordant) / denominator;
+    }
+
+    /**
+     * Stand-in for the elicitation of Genius: distinct bids drawn without replacement from a pool shared by all the
+     * rankings, ordered by the real utility.
+     */
+    private static BidRanking ranking(AdditiveUtilitySpace space, List<Bid> pool, int size, Random random) {
+        List<Bid> bids = new ArrayList<>(pool);
+        int n = Math.min(size, bids.size());
+        // partial Fisher-Yates shuffle: the first n bids are a uniform sample of the pool
+        for (int i = 0; i < n; i++)
+            Collections.swap(bids, i, i + random.nextInt(bids.size() - i));
+        bids = new ArrayList<>(bids.subList(0, n));
+        bids.sort(Comparator.comparingDouble(space::getUtility));
+        return new BidRanking(bids, space.getUtility(bids.get(0)), space.getUtility(bids.get(n - 1)));
+    }
+
+    public static void main(String[] args) throws Exception {
+        String domainFile = args.length > 0 ? args[0] : "etc/templates/partydomain/party_domain.xml";
+        int size = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        int rankings = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+
+        Domain domain = new DomainImpl(domainFile);
+        List<String> names = new ArrayList<>();
+        List<AdditiveUtilitySpace> spaces = new ArrayList<>();
+        List<String> files = new ArrayList<>(Arrays.asList(args).subList(Math.min(4, args.length), args.length));
+        if (files.isEmpty()) {
+            File[] others = new File(domainFile).getAbsoluteFile().getParentFile()
+                    .listFiles((dir, name) -> name.endsWith(".xml") && !new File(dir, name).equals(new File(domainFile).getAbsoluteFile()));
+            if (others != null) {
+                for (File file : others)
+                    files.add(file.getPath());
+            }
+            files.sort(null);
+        }
+        for (String file : files) {
+            try {
+                spaces.add(new AdditiveUtilitySpace(domain, file));
+                names.add(new File(file).getName());
+            } catch (Exception e) {
+                System.err.println("Skipping " + file + ": " + e);
+            }
+        }
+
+        Random random = new Random(13);
+        BidEncoder encoder = new BidEncoder(domain);
+        // distinct bids, as many as the domain has if it is smaller
+        Set<Bid> distinct = new LinkedHashSet<>();
+        long poolSize = Math.min(4L * size, encoder.getNumberOfBids());
+        while (distinct.size() < poolSize)
+            distinct.add(domain.getRandomBid(random));
+        List<Bid> pool = new ArrayList<>(distinct);
+
+        List<BidRanking> batch = new ArrayList<>();
+        List<EncodedUtilitySpace> profiles = new ArrayList<>();
+        for (AdditiveUtilitySpace space : spaces) {
+            EncodedUtilitySpace profile = new EncodedUtilitySpace(encoder, space);
+            for (int r = 0; r < rankings; r++) {
+                batch.add(ranking(space, pool, size, random));
+                profiles.add(profile);
+            }
+        }
+        System.out.println(batch.size() + " rankings of " + size + " bids, " + spaces.size() + " profiles, "
+                + threads + " threads");
+
+        long start = System.nanoTime();
+        List<Result> results = new BatchEstimator(encoder, threads, random).estimate(batch, profiles);
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        for (int p = 0; p < spaces.size(); p++) {
+            double spearman = 0, kendall = 0, millis = 0;
+            for (int r = p * rankings; r < (p + 1) * rankings; r++) {
+                spearman += results.get(r).spearman / rankings;
+                kendall += results.get(r).kendall / rankings;
+                millis += results.get(r).nanos / 1e6 / rankings;
+            }
+            System.out.printf("%-40s spearman %.4f  kendall %.4f  estimation %.2f ms%n", names.get(p), spearman,
+                    kendall, millis);
+        }
+        System.out.printf("Finished in %.2f s, %.1f rankings/s%n", seconds, results.size() / seconds);
+    }
+}
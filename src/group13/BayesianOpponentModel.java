@@ -0,0 +1,255 @@
+package group13;
+
+import genius.core.Bid;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Bayesian opponent model.
+ * <ul>
+ * <li>Weights: a bounded set of hypotheses on the order of the issues, the weight decreasing linearly with the rank.
+ * An opponent changes the value of an issue more often the less it matters, so each hypothesis is weighted by
+ * how likely it makes the issues that changed since the previous offer. Unlikely hypotheses are pruned and
+ * replaced by variations of the most likely one.</li>
+ * <li>Values: Dirichlet posterior of the values offered on each issue, an offer counting less the later it comes,
+ * since a conceding opponent moves away from the values it prefers. The utility of a value is its posterior
+ * over the one of the most offered value of the issue.</li>
+ * </ul>
+ * Older evidence on the weights fades by {@link #FORGETTING} per offer, so the model follows an opponent that
+ * changes its behaviour. Hypotheses and posteriors live in flat arrays, and an update costs one pass over the
+ * weight hypotheses and one over the issues.
+ */
+public class BayesianOpponentModel implements OpponentModel {
+    public static final int MAX_HYPOTHESES = 128;
+    //probability that the most and the least important issue change between two offers
+    public static final double MIN_CHANGE = 0.1;
+    public static final double MAX_CHANGE = 0.9;
+    //weight kept by the earlier log likelihoods at every offer
+    public static final double FORGETTING = 0.98;
+    //hypotheses less likely than this share of the most likely one are replaced
+    public static final double PRUNE = 1e-3;
+    //pseudo-count of every value, and how much less the last offers count than the first ones
+    public static final double VALUE_PRIOR = 0.5;
+    public static final double CONCESSION = 0.5;
+
+    private final BidEncoder encoder;
+    private final int issues;
+    private final int[] offsets;
+    private final Random random = new Random(0);
+
+    private final int hypotheses;
+    //ranks[h * issues + i] is the rank of issue i in hypothesis h, weights the matching weight
+    private final int[] ranks;
+    private final double[] weights;
+    private final double[] logPosterior;
+    //log probability that an issue of each rank changes, or stays, between two offers
+    private final double[] logChange;
+    private final double[] logStay;
+
+    //decayed number of offers using each value, and the highest of each issue
+    private final double[] counts;
+    private final double[] maxCounts;
+
+    private final double[] expectedWeights;
+    private final int[] previousOffer;
+    private boolean hasPreviousOffer;
+    private final int[] encodedBid;
+    private int numberOfBids;
+
+    /**
+     * @param encoder Index of the negotiation domain
+     */
+    public BayesianOpponentModel(BidEncoder encoder) {
+        this.encoder = encoder;
+        this.issues = encoder.getNumberOfIssues();
+        this.offsets = new int[issues];
+        int totalValues = 0;
+        for (int i = 0; i < issues; i++) {
+            this.offsets[i] = totalValues;
+            totalValues += encoder.getNumberOfValues(i);
+        }
+
+        long permutations = 1;
+        for (int i = 2; i <= issues && permutations <= MAX_HYPOTHESES; i++)
+            permutations *= i;
+        this.hypotheses = (int) Math.min(permutations, MAX_HYPOTHESES);
+        this.ranks = new int[hypotheses * issues];
+        this.weights = new double[hypotheses * issues];
+        this.logPosterior = new double[hypotheses];
+
+        int[] order = new int[issues];
+        for (int i = 0; i < issues; i++)
+            order[i] = i;
+        boolean enumerate = permutations <= MAX_HYPOTHESES;
+        for (int h = 0; h < hypotheses; h++) {
+            if (enumerate) {
+                if (h > 0)
+                    nextPermutation(order);
+            } else {
+                for (int i = issues - 1; i > 0; i--)
+                    swap(order, i, random.nextInt(i + 1));
+            }
+            System.arraycopy(order, 0, ranks, h * issues, issues);
+            setWeights(h);
+        }
+
+        this.logChange = new double[issues];
+        this.logStay = new double[issues];
+        for (int r = 0; r < issues; r++) {
+            double change = issues < 2 ? MAX_CHANGE : MIN_CHANGE + (MAX_CHANGE - MIN_CHANGE) * r / (issues - 1);
+            this.logChange[r] = Math.log(change);
+            this.logStay[r] = Math.log(1 - change);
+        }
+
+        this.counts = new double[totalValues];
+        this.maxCounts = new double[issues];
+        this.expectedWeights = new double[issues];
+        this.previousOffer = new int[issues];
+        this.encodedBid = new int[issues];
+        updateExpectedWeights();
+    }
+
+    /**
+     * Moves to the next permutation in lexicographic order.
+     */
+    private static void nextPermutation(int[] order) {
+        int i = order.length - 2;
+        while (i >= 0 && order[i] >= order[i + 1])
+            i--;
+        if (i >= 0) {
+            int j = order.length - 1;
+            while (order[j] <= order[i])
+                j--;
+            swap(order, i, j);
+        }
+        for (int a = i + 1, b = order.length - 1; a < b; a++, b--)
+            swap(order, a, b);
+    }
+
+    private static void swap(int[] array, int a, int b) {
+        int tmp = array[a];
+        array[a] = array[b];
+        array[b] = tmp;
+    }
+
+    /**
+     * Weight of the issue of rank r (0 for the most important) is 2 (n - r) / (n (n + 1)), so the weights sum to 1.
+     */
+    private void setWeights(int h) {
+        for (int i = 0; i < issues; i++)
+            weights[h * issues + i] = 2.0 * (issues - ranks[h * issues + i]) / (issues * (issues + 1.0));
+    }
+
+    private void updateExpectedWeights() {
+        double max = Double.NEGATIVE_INFINITY;
+        for (int h = 0; h < hypotheses; h++)
+            max = Math.max(max, logPosterior[h]);
+
+        Arrays.fill(expectedWeights, 0);
+        double total = 0;
+        for (int h = 0; h < hypotheses; h++) {
+            double p = Math.exp(logPosterior[h] - max);
+            total += p;
+            for (int i = 0; i < issues; i++)
+                expectedWeights[i] += p * weights[h * issues + i];
+        }
+        for (int i = 0; i < issues; i++)
+            expectedWeights[i] /= total;
+    }
+
+    private double getValueUtility(int issueKey, int valueKey) {
+        return (counts[offsets[issueKey] + valueKey] + VALUE_PRIOR) / (maxCounts[issueKey] + VALUE_PRIOR);
+    }
+
+    @Override
+    public double getValue(Bid b) {
+        return getValue(this.encoder.encode(b, this.encodedBid));
+    }
+
+    @Override
+    public double getValue(int[] encoded) {
+        double utility = 0;
+        for (int i = 0; i < issues; i++)
+            utility += expectedWeights[i] * getValueUtility(i, encoded[i]);
+        return utility;
+    }
+
+    @Override
+    public double getContribution(int issueKey, int valueKey) {
+        return expectedWeights[issueKey] * getValueUtility(issueKey, valueKey);
+    }
+
+    @Override
+    public double update(int[] encoded, double time) {
+        if (this.hasPreviousOffer) {
+            for (int h = 0; h < hypotheses; h++) {
+                double logLikelihood = 0;
+                for (int i = 0; i < issues; i++) {
+                    int rank = ranks[h * issues + i];
+                    logLikelihood += encoded[i] != previousOffer[i] ? logChange[rank] : logStay[rank];
+                }
+                logPosterior[h] = FORGETTING * logPosterior[h] + logLikelihood;
+            }
+            prune();
+            updateExpectedWeights();
+        }
+        System.arraycopy(encoded, 0, previousOffer, 0, issues);
+        this.hasPreviousOffer = true;
+        this.numberOfBids += 1;
+
+        double evidence = 1 - CONCESSION * time;
+        for (int i = 0; i < issues; i++) {
+            int k = offsets[i] + encoded[i];
+            counts[k] += evidence;
+            maxCounts[i] = Math.max(maxCounts[i], counts[k]);
+        }
+
+        return getValue(encoded);
+    }
+
+    /**
+     * Replaces the unlikely weight hypotheses by the most likely one with two issues swapped.
+     */
+    private void prune() {
+        if (issues < 2)
+            return;
+        int best = 0;
+        for (int h = 1; h < hypotheses; h++)
+            if (logPosterior[h] > logPosterior[best])
+                best = h;
+
+        double floor = logPosterior[best] + Math.log(PRUNE);
+        for (int h = 0; h < hypotheses; h++) {
+            if (logPosterior[h] < floor) {
+                System.arraycopy(ranks, best * issues, ranks, h * issues, issues);
+                int a = random.nextInt(issues);
+                int b = (a + 1 + random.nextInt(issues - 1)) % issues;
+                swap(ranks, h * issues + a, h * issues + b);
+                setWeights(h);
+                logPosterior[h] = floor;
+            }
+        }
+    }
+
+    /**
+     * Earlier offers count as offers made at the start of this negotiation.
+     */
+    @Override
+    public void addPrior(int[][] prior) {
+        for (int i = 0; i < issues; i++) {
+            for (int v = 0; v < prior[i].length; v++) {
+                counts[offsets[i] + v] += prior[i][v];
+                maxCounts[i] = Math.max(maxCounts[i], counts[offsets[i] + v]);
+            }
+        }
+        if (prior.length > 0)
+            for (int f : prior[0])
+                this.numberOfBids += f;
+    }
+
+    @Override
+    public int getNumberOfBids() {
+        return numberOfBids;
+    }
+}
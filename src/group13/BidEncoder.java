@@ -0,0 +1,304 @@
+package group13;
+
+import genius.core.Bid;
+import genius.core.Domain;
+import genius.core.issue.Issue;
+import genius.core.issue.ISSUETYPE;
+import genius.core.issue.IssueDiscrete;
+import genius.core.issue.IssueInteger;
+import genius.core.issue.IssueReal;
+import genius.core.issue.Value;
+import genius.core.issue.ValueDiscrete;
+import genius.core.issue.ValueInteger;
+import genius.core.issue.ValueReal;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Index of a negotiation domain, built once, that encodes bids as an array with the index of the value
+ * chosen for each issue. Issues are indexed in the order of the domain, values in the order of their issue.
+ * <p>
+ * Integer and real issues are split in at most {@link #MAX_BINS} bins of equal width, so everything indexed by
+ * value grows with the number of bins, not with the range. A bin stands for the value in its middle, except the
+ * first and the last that stand for the bounds of the issue, so bids at the extremes can still be offered.
+ */
+public class BidEncoder {
+    public static final int MAX_BINS = 32;
+
+    private final Domain domain;
+    private final Issue[] issues;
+    private final ISSUETYPE[] types;
+    private final int[] issueNumbers;
+    //Maps each issue number to an integer in range [0,i-1]; -1 if the number is not used by the domain
+    private final int[] issueIndex;
+    //Maps each value of each discrete issue to an integer in range [0,v-1]
+    private final List<HashMap<Value, Integer>> valueIndex = new ArrayList<>();
+    //Value of each index: the value itself for discrete issues, the one standing for the bin otherwise
+    private final Value[][] values;
+    //Start and width of the bins of integer and real issues
+    private final double[] lowerBounds;
+    private final double[] binWidths;
+    //Multiplier of each issue when a bid is packed into a long
+    private final long[] radix;
+    private final boolean packable;
+
+    /**
+     * Builds the index of the domain.
+     *
+     * @param d Negotiation Domain
+     */
+    public BidEncoder(Domain d) {
+        this.domain = d;
+
+        List<Issue> domainIssues = d.getIssues();
+        int n = domainIssues.size();
+        this.issues = new Issue[n];
+        this.types = new ISSUETYPE[n];
+        this.issueNumbers = new int[n];
+        this.values = new Value[n][];
+        this.lowerBounds = new double[n];
+        this.binWidths = new double[n];
+        this.radix = new long[n];
+
+        int maxNumber = 0;
+        for (Issue issue : domainIssues)
+            maxNumber = Math.max(maxNumber, issue.getNumber());
+
+        this.issueIndex = new int[maxNumber + 1];
+        Arrays.fill(this.issueIndex, -1);
+
+        long combinations = 1;
+        boolean fits = true;
+        int key = 0;
+        for (Issue issue : domainIssues) {
+            this.issues[key] = issue;
+            this.types[key] = issue.getType();
+            this.issueNumbers[key] = issue.getNumber();
+            this.issueIndex[issue.getNumber()] = key;
+
+            HashMap<Value, Integer> mapping = new HashMap<>();
+            if (issue instanceof IssueInteger) {
+                IssueInteger integer = (IssueInteger) issue;
+                int range = integer.getUpperBound() - integer.getLowerBound() + 1;
+                int bins = Math.min(range, MAX_BINS);
+                this.lowerBounds[key] = integer.getLowerBound();
+                this.binWidths[key] = (double) range / bins;
+                this.values[key] = new Value[bins];
+                for (int v = 0; v < bins; v++) {
+                    int first = (int) Math.ceil(v * this.binWidths[key]);
+                    int last = (int) Math.ceil((v + 1) * this.binWidths[key]) - 1;
+                    int offset = v == 0 ? 0 : v == bins - 1 ? range - 1 : (first + last) / 2;
+                    this.values[key][v] = new ValueInteger(integer.getLowerBound() + offset);
+                }
+            } else if (issue instanceof IssueReal) {
+                IssueReal real = (IssueReal) issue;
+                int steps = real.getNumberOfDiscretizationSteps();
+                int bins = steps > 0 ? Math.min(steps, MAX_BINS) : MAX_BINS;
+                this.lowerBounds[key] = real.getLowerBound();
+                this.binWidths[key] = (real.getUpperBound() - real.getLowerBound()) / bins;
+                this.values[key] = new Value[bins];
+                for (int v = 0; v < bins; v++) {
+                    double offset = v == 0 ? 0 : v == bins - 1 ? bins * this.binWidths[key] : (v + 0.5) * this.binWidths[key];
+                    this.values[key][v] = new ValueReal(real.getLowerBound() + offset);
+                }
+            } else {
+                this.values[key] = ((IssueDiscrete) issue).getValues().toArray(new ValueDiscrete[0]);
+                for (int v = 0; v < this.values[key].length; v++)
+                    mapping.put(this.values[key][v], v);
+            }
+            this.valueIndex.add(mapping);
+
+            this.radix[key] = combinations;
+            if (fits && combinations > Long.MAX_VALUE / Math.max(1, this.values[key].length))
+                fits = false;
+            else
+                combinations *= Math.max(1, this.values[key].length);
+
+            key++;
+        }
+        this.packable = fits;
+    }
+
+    public Domain getDomain() {
+        return domain;
+    }
+
+    public int getNumberOfIssues() {
+        return issues.length;
+    }
+
+    public int getNumberOfValues(int issue) {
+        return values[issue].length;
+    }
+
+    public Issue getIssue(int issue) {
+        return issues[issue];
+    }
+
+    public int getIssueNumber(int issue) {
+        return issueNumbers[issue];
+    }
+
+    /**
+     * @param issueNumber Number of the issue in the domain
+     * @return Index of the issue, or -1 if the domain has no such issue
+     */
+    public int getIssueIndex(int issueNumber) {
+        if (issueNumber < 0 || issueNumber >= issueIndex.length)
+            return -1;
+        return issueIndex[issueNumber];
+    }
+
+    /**
+     * @param issue Index of the issue
+     * @return Type of the issue: DISCRETE, INTEGER or REAL
+     */
+    public ISSUETYPE getType(int issue) {
+        return types[issue];
+    }
+
+    /**
+     * @param issue Index of the issue
+     * @return true if the issue is discrete, so its values are not bins
+     */
+    public boolean isDiscrete(int issue) {
+        return types[issue] == ISSUETYPE.DISCRETE;
+    }
+
+    /**
+     * @param issue Index of the issue
+     * @param value Index of the value
+     * @return The value, or the one standing for the bin for integer and real issues
+     */
+    public Value getValue(int issue, int value) {
+        return values[issue][value];
+    }
+
+    /**
+     * @param issue Index of the issue
+     * @param v     Value of the issue
+     * @return Index of the value (its bin for integer and real issues), or -1 if it does not belong to the issue
+     */
+    public int getValueIndex(int issue, Value v) {
+        if (v instanceof ValueInteger)
+            return getBin(issue, ((ValueInteger) v).getValue());
+        if (v instanceof ValueReal)
+            return getBin(issue, ((ValueReal) v).getValue());
+        Integer value = valueIndex.get(issue).get(v);
+        return value == null ? -1 : value;
+    }
+
+    private int getBin(int issue, double v) {
+        if (binWidths[issue] <= 0)
+            return values[issue].length == 0 ? -1 : 0;
+        int bin = (int) Math.floor((v - lowerBounds[issue]) / binWidths[issue]);
+        return Math.max(0, Math.min(values[issue].length - 1, bin));
+    }
+
+    /**
+     * @param b       Bid
+     * @param encoded Encoding of the bid
+     * @return true if the bid has the very values its encoding stands for, false if an integer or real value lies
+     * elsewhere in its bin
+     */
+    public boolean isRepresentative(Bid b, int[] encoded) {
+        for (int i = 0; i < issues.length; i++) {
+            if (isDiscrete(i))
+                continue;
+            Value v = b.getValue(issueNumbers[i]);
+            Value representative = values[i][encoded[i]];
+            if (v instanceof ValueInteger && ((ValueInteger) v).getValue() != ((ValueInteger) representative).getValue())
+                return false;
+            if (v instanceof ValueReal && ((ValueReal) v).getValue() != ((ValueReal) representative).getValue())
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Encodes a bid into a new array.
+     *
+     * @param b Bid to encode
+     * @return Index of the value of each issue
+     */
+    public int[] encode(Bid b) {
+        return encode(b, new int[issues.length]);
+    }
+
+    /**
+     * Encodes a bid into an existing array, without allocating.
+     *
+     * @param b   Bid to encode
+     * @param out Array with one position per issue
+     * @return the given array
+     */
+    public int[] encode(Bid b, int[] out) {
+        for (int i = 0; i < issues.length; i++)
+            out[i] = getValueIndex(i, b.getValue(issueNumbers[i]));
+        return out;
+    }
+
+    /**
+     * Builds the bid represented by an encoding.
+     *
+     * @param encoded Index of the value of each issue
+     * @return Bid of the domain
+     */
+    public Bid decode(int[] encoded) {
+        HashMap<Integer, Value> bidValues = new HashMap<>();
+        for (int i = 0; i < issues.length; i++)
+            bidValues.put(issueNumbers[i], values[i][encoded[i]]);
+        return new Bid(domain, bidValues);
+    }
+
+    /**
+     * @return true if every bid of the domain can be packed into a long
+     */
+    public boolean isPackable() {
+        return packable;
+    }
+
+    /**
+     * Packs an encoded bid into a single long, using the number of values of each issue as radix.
+     * Only valid if the domain is packable.
+     *
+     * @param encoded Index of the value of each issue
+     * @return Unique key of the bid in the domain
+     */
+    public long pack(int[] encoded) {
+        long key = 0;
+        for (int i = 0; i < issues.length; i++)
+            key += radix[i] * encoded[i];
+        return key;
+    }
+
+    /**
+     * Inverse of {@link #pack(int[])}.
+     *
+     * @param key Packed bid
+     * @param out Array with one position per issue
+     * @return the given array
+     */
+    public int[] unpack(long key, int[] out) {
+        for (int i = issues.length - 1; i >= 0; i--) {
+            out[i] = (int) (key / radix[i]);
+            key -= out[i] * radix[i];
+        }
+        return out;
+    }
+
+    /**
+     * @return Number of bids in the domain, or Long.MAX_VALUE if it overflows
+     */
+    public long getNumberOfBids() {
+        if (!packable)
+            return Long.MAX_VALUE;
+        long total = 1;
+        for (Value[] issueValues : values)
+            total *= issueValues.length;
+        return total;
+    }
+}
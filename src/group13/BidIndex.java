@@ -0,0 +1,253 @@
+package group13;
+
+import genius.core.Bid;
+import genius.core.utility.AbstractUtilitySpace;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Bids of the domain sorted by utility, built once per negotiation and sorted again with {@link #rescore} when the
+ * utility space changes, e.g. for a refined estimate under uncertainty.
+ * Small domains are fully enumerated. For bigger additive domains, the utility range is split in strata
+ * and each stratum is filled by an {@link IsoUtilityBidIterator}, so every utility band that has bids is
+ * represented; whatever is left of the sample, or the whole sample for non-additive spaces, is drawn uniformly.
+ */
+public class BidIndex {
+    //domains with more bids than this are sampled instead of enumerated
+    public static final int MAX_ENUMERATED = 100000;
+    public static final int SAMPLE_SIZE = 20000;
+    public static final int STRATA = 64;
+
+    private final BidEncoder encoder;
+    private final int issues;
+    //encoded bids, one after the other, sorted by utility (ascending)
+    private int[] bids;
+    private double[] utilities;
+
+    /**
+     * Builds the index of the domain for a utility space.
+     *
+     * @param encoder Index of the domain
+     * @param space   Utility space used to sort the bids
+     * @param maxBid  Bid with the highest utility, always kept in the index (may be null)
+     * @param random  Generator used to sample bigger domains
+     */
+    public BidIndex(BidEncoder encoder, AbstractUtilitySpace space, Bid maxBid, Random random) {
+        this.encoder = encoder;
+        this.issues = encoder.getNumberOfIssues();
+
+        long total = encoder.getNumberOfBids();
+        boolean enumerate = total <= MAX_ENUMERATED;
+        int size = enumerate ? (int) total : SAMPLE_SIZE + (maxBid == null ? 0 : 1);
+
+        int[] unsorted = new int[size * issues];
+        double[] unsortedUtilities = new double[size];
+
+        EncodedUtilitySpace encodedSpace = EncodedUtilitySpace.of(encoder, space);
+
+        int[] current = new int[issues];
+        int first = 0;
+        if (!enumerate && encodedSpace != null)
+            first = sampleStrata(encodedSpace, unsorted, unsortedUtilities);
+
+        for (int b = first; b < size; b++) {
+            if (enumerate) {
+                if (b > 0)
+                    nextBid(current);
+            } else if (b == SAMPLE_SIZE) {
+                encoder.encode(maxBid, current);
+            } else {
+                for (int i = 0; i < issues; i++)
+                    current[i] = random.nextInt(encoder.getNumberOfValues(i));
+            }
+
+            System.arraycopy(current, 0, unsorted, b * issues, issues);
+            unsortedUtilities[b] = encodedSpace != null ? encodedSpace.getUtility(current)
+                    : space.getUtility(encoder.decode(current));
+        }
+
+        sort(unsorted, unsortedUtilities);
+    }
+
+    /**
+     * Evaluates the bids of the index in another utility space and sorts them again. The bids stay the same: the
+     * strata they were sampled from followed the earlier space.
+     *
+     * @param space Utility space used to sort the bids
+     */
+    public void rescore(AbstractUtilitySpace space) {
+        EncodedUtilitySpace encodedSpace = EncodedUtilitySpace.of(encoder, space);
+        int[] current = new int[issues];
+        double[] unsortedUtilities = new double[utilities.length];
+        for (int b = 0; b < utilities.length; b++) {
+            getBid(b, current);
+            unsortedUtilities[b] = encodedSpace != null ? encodedSpace.getUtility(current)
+                    : space.getUtility(encoder.decode(current));
+        }
+        sort(bids, unsortedUtilities);
+    }
+
+    /**
+     * Replaces the bids of the index with the given ones, sorted by utility.
+     */
+    private void sort(int[] unsorted, double[] unsortedUtilities) {
+        int size = unsortedUtilities.length;
+        Integer[] order = new Integer[size];
+        for (int b = 0; b < size; b++)
+            order[b] = b;
+        Arrays.sort(order, (x, y) -> Double.compare(unsortedUtilities[x], unsortedUtilities[y]));
+
+        int[] sortedBids = new int[size * issues];
+        double[] sortedUtilities = new double[size];
+        for (int b = 0; b < size; b++) {
+            System.arraycopy(unsorted, order[b] * issues, sortedBids, b * issues, issues);
+            sortedUtilities[b] = unsortedUtilities[order[b]];
+        }
+        this.bids = sortedBids;
+        this.utilities = sortedUtilities;
+    }
+
+    /**
+     * Takes the best bids of each stratum of the utility range, from the top.
+     *
+     * @return Number of bids added at the start of the arrays
+     */
+    private int sampleStrata(EncodedUtilitySpace space, int[] out, double[] outUtilities) {
+        int perStratum = SAMPLE_SIZE / STRATA;
+        IsoUtilityBidIterator range = new IsoUtilityBidIterator(space, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, 1);
+        double step = (range.getMaxUtility() - range.getMinUtility()) / STRATA;
+
+        int count = 0;
+        int[] current = new int[issues];
+        for (int s = 0; s < STRATA; s++) {
+            double upper = s == 0 ? Double.POSITIVE_INFINITY : Math.nextDown(range.getMaxUtility() - s * step);
+            double lower = s == STRATA - 1 ? Double.NEGATIVE_INFINITY : range.getMaxUtility() - (s + 1) * step;
+
+            IsoUtilityBidIterator stratum = new IsoUtilityBidIterator(space, lower, upper, perStratum);
+            for (int b = 0; b < perStratum && stratum.hasNext(); b++) {
+                stratum.next(current);
+                System.arraycopy(current, 0, out, count * issues, issues);
+                outUtilities[count++] = stratum.getLastUtility();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Moves to the next bid of the domain, counting with the number of values of each issue as radix.
+     */
+    private void nextBid(int[] current) {
+        for (int i = 0; i < issues; i++) {
+            current[i] += 1;
+            if (current[i] < encoder.getNumberOfValues(i))
+                return;
+            current[i] = 0;
+        }
+    }
+
+    public int size() {
+        return utilities.length;
+    }
+
+    public double getUtility(int position) {
+        return utilities[position];
+    }
+
+    /**
+     * Copies the encoded bid at a position of the index.
+     *
+     * @param position Position in the index
+     * @param out      Array with one position per issue
+     * @return the given array
+     */
+    public int[] getBid(int position, int[] out) {
+        System.arraycopy(bids, position * issues, out, 0, issues);
+        return out;
+    }
+
+    public Bid getBid(int position) {
+        return encoder.decode(getBid(position, new int[issues]));
+    }
+
+    /**
+     * Binary search for the first bid with at least the given utility.
+     *
+     * @param utility Lower bound of the utility
+     * @return Position of the first bid with utility >= the bound, or size() if there is none
+     */
+    public int ceiling(double utility) {
+        int low = 0;
+        int high = utilities.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (utilities[mid] < utility)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return low;
+    }
+
+    /**
+     * Binary search for the position after the last bid with at most the given utility.
+     *
+     * @param utility Upper bound of the utility
+     * @return Position of the first bid with utility > the bound, or size() if there is none
+     */
+    public int higher(double utility) {
+        int low = 0;
+        int high = utilities.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (utilities[mid] <= utility)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return low;
+    }
+
+    /**
+     * Picks bids with utility in [lower, upper]. When the range has fewer bids than asked,
+     * it is completed with the closest bids above it, so there are always enough bids if the index has them.
+     *
+     * @param lower     Lowest utility accepted
+     * @param upper     Highest utility wanted
+     * @param noOfBids  Number of bids to pick
+     * @param random    Generator used to pick inside the range
+     * @return Bids in the range, at most noOfBids
+     */
+    public List<Bid> getBids(double lower, double upper, int noOfBids, Random random) {
+        int from = ceiling(lower);
+        int to = higher(upper);
+        List<Bid> result = new ArrayList<>(noOfBids);
+
+        if (to - from <= noOfBids) {
+            for (int b = from; b < to; b++)
+                result.add(getBid(b));
+            for (int b = to; b < utilities.length && result.size() < noOfBids; b++)
+                result.add(getBid(b));
+        } else {
+            // Floyd's sampling of distinct positions in the range, without materializing them
+            int range = to - from;
+            int[] picked = new int[noOfBids];
+            int count = 0;
+            for (int j = range - noOfBids; j < range; j++) {
+                int p = random.nextInt(j + 1);
+                for (int k = 0; k < count; k++) {
+                    if (picked[k] == p) {
+                        p = j;
+                        break;
+                    }
+                }
+                picked[count++] = p;
+            }
+            for (int p : picked)
+                result.add(getBid(from + p));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,177 @@
+package group13;
+
+import genius.core.Bid;
+
+import java.util.Collection;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Scores a set of candidate bids in a single pass: the sum of the predicted utility of every opponent,
+ * and the Nash product of the predicted utilities of the opponents and our own utility.
+ * Candidates are encoded once into a flat array; above {@link #PARALLEL_THRESHOLD} candidates the pass is
+ * split over the common fork-join pool. The opponent models are only read, so they must not be updated meanwhile.
+ */
+public class BidScorer {
+    //below this number of candidates the pass runs in the calling thread
+    public static final int PARALLEL_THRESHOLD = 1024;
+    //candidates scored by each fork-join task
+    private static final int CHUNK = 256;
+
+    private final BidEncoder encoder;
+    private final int issues;
+    //reused to encode the candidates without allocating
+    private final int[] encodedBid;
+
+    private Bid[] candidates = new Bid[0];
+    private int size;
+    //encoded candidates, one after the other
+    private int[] encoded = new int[0];
+    //utility of each candidate for us
+    private double[] ownUtilities = new double[0];
+    private double[] opponentScores = new double[0];
+    private double[] nashScores = new double[0];
+
+    /**
+     * @param encoder Index of the domain
+     */
+    public BidScorer(BidEncoder encoder) {
+        this.encoder = encoder;
+        this.issues = encoder.getNumberOfIssues();
+        this.encodedBid = new int[this.issues];
+    }
+
+    /**
+     * Scores the candidates. Our own utility is read from the encoded space when there is one,
+     * otherwise from the cache, before the pass.
+     *
+     * @param bids             Candidate bids
+     * @param opponents        Models of the opponents
+     * @param ownSpace         Our utility space on the encoding (may be null)
+     * @param ownCache         Our utility, used when ownSpace is null
+     * @param reservationValue Reservation value subtracted from both utilities in the Nash product
+     */
+    public void score(Collection<Bid> bids, OpponentModelManager opponents,
+                      EncodedUtilitySpace ownSpace, UtilityCache ownCache, double reservationValue) {
+        ensureCapacity(bids.size());
+        this.size = 0;
+        for (Bid bid : bids) {
+            this.candidates[size] = bid;
+            System.arraycopy(encoder.encode(bid, this.encodedBid), 0, this.encoded, size * issues, issues);
+            if (ownSpace == null)
+                this.ownUtilities[size] = ownCache.getUtility(this.encodedBid);
+            size++;
+        }
+
+        // the views are rebuilt here, so the pass only reads them
+        opponents.refresh();
+        if (size < PARALLEL_THRESHOLD) {
+            scoreRange(0, size, opponents, ownSpace, reservationValue);
+        } else {
+            ForkJoinPool.commonPool().invoke(new ScoreTask(0, size, opponents, ownSpace, reservationValue));
+        }
+    }
+
+    private void ensureCapacity(int n) {
+        if (this.candidates.length >= n)
+            return;
+        this.candidates = new Bid[n];
+        this.encoded = new int[n * issues];
+        this.ownUtilities = new double[n];
+        this.opponentScores = new double[n];
+        this.nashScores = new double[n];
+    }
+
+    private void scoreRange(int from, int to, OpponentModelManager opponents, EncodedUtilitySpace ownSpace, double reservationValue) {
+        int[] bid = new int[issues];
+        for (int b = from; b < to; b++) {
+            System.arraycopy(this.encoded, b * issues, bid, 0, issues);
+
+            this.opponentScores[b] = opponents.getSum(bid);
+
+            if (ownSpace != null)
+                this.ownUtilities[b] = ownSpace.getUtility(bid);
+            this.nashScores[b] = opponents.getProduct(bid, reservationValue) * Math.max(0, this.ownUtilities[b] - reservationValue);
+        }
+    }
+
+    /**
+     * Splits the candidates in halves until they fit in a chunk.
+     */
+    private final class ScoreTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+        private final OpponentModelManager opponents;
+        private final EncodedUtilitySpace ownSpace;
+        private final double reservationValue;
+
+        ScoreTask(int from, int to, OpponentModelManager opponents, EncodedUtilitySpace ownSpace,
+                  double reservationValue) {
+            this.from = from;
+            this.to = to;
+            this.opponents = opponents;
+            this.ownSpace = ownSpace;
+            this.reservationValue = reservationValue;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= CHUNK) {
+                scoreRange(from, to, opponents, ownSpace, reservationValue);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new ScoreTask(from, mid, opponents, ownSpace, reservationValue),
+                    new ScoreTask(mid, to, opponents, ownSpace, reservationValue));
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public Bid getBid(int candidate) {
+        return candidates[candidate];
+    }
+
+    public double getOwnUtility(int candidate) {
+        return ownUtilities[candidate];
+    }
+
+    public double getOpponentScore(int candidate) {
+        return opponentScores[candidate];
+    }
+
+    public double getNashScore(int candidate) {
+        return nashScores[candidate];
+    }
+
+    /**
+     * @return Candidate with the highest sum of opponent utilities, the first one on ties
+     */
+    public int getBestForOpponents() {
+        int best = 0;
+        for (int b = 1; b < size; b++) {
+            if (opponentScores[b] > opponentScores[best])
+                best = b;
+        }
+        return best;
+    }
+
+    /**
+     * @return Candidate with the highest positive Nash product, or the first candidate if no product is positive
+     */
+    public int getNash() {
+        int nash = 0;
+        double bestScore = 0.0;
+        for (int b = 0; b < size; b++) {
+            if (nashScores[b] > bestScore) {
+                bestScore = nashScores[b];
+                nash = b;
+            }
+        }
+        return nash;
+    }
+}
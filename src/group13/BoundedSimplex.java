@@ -0,0 +1,237 @@
+package group13;
+
+import java.util.Arrays;
+
+/**
+ * Revised simplex for problems with few rows and many sparse columns with bounds:
+ * maximize c x subject to A x &lt;= b, lower &lt;= x &lt;= upper, with b &gt;= 0 and every lower bound &lt;= 0 &lt;= upper,
+ * so starting from x = 0 on the slack basis needs no first phase.
+ * <p>
+ * Bounds are kept on the variables instead of being rows: a variable that hits its other bound flips there without
+ * a pivot. Only the inverse of the basis is dense, one row and one column per row of A, so an iteration costs the
+ * square of the number of rows plus the nonzeros of the columns. Pricing takes the largest reduced cost and falls
+ * back to Bland's rule after a run of degenerate pivots, so it cannot cycle.
+ */
+public class BoundedSimplex {
+    private static final double TOLERANCE = 1e-9;
+    //consecutive degenerate pivots before Bland's rule is used
+    private static final int DEGENERATE_PIVOTS = 50;
+
+    private final int rows;
+    private final double[] rhs;
+
+    //structural columns, then one slack column per row
+    private int columns;
+    private double[] costs = new double[16];
+    private double[] lower = new double[16];
+    private double[] upper = new double[16];
+    private int[][] columnRows = new int[16][];
+    private double[][] columnValues = new double[16][];
+
+    private double[] values;
+    private int[] basis;
+    //position of each variable in the basis, -1 if it is not basic
+    private int[] position;
+    //inverse of the basis, row by row
+    private double[][] inverse;
+    private double[] prices;
+    private double objective;
+    private int iterations;
+
+    /**
+     * @param rows Number of rows of A
+     * @param rhs  Right hand side b, every entry at least 0
+     */
+    public BoundedSimplex(int rows, double[] rhs) {
+        this.rows = rows;
+        this.rhs = rhs.clone();
+    }
+
+    /**
+     * @param cost       Cost of the variable in the objective
+     * @param lower      Lower bound, at most 0, may be -infinity
+     * @param upper      Upper bound, at least 0, may be +infinity
+     * @param rowIndices Rows where the column of the variable is not zero
+     * @param rowValues  Entry of the column in each of these rows
+     * @return Index of the variable
+     */
+    public int addColumn(double cost, double lower, double upper, int[] rowIndices, double[] rowValues) {
+        if (columns == costs.length) {
+            int capacity = columns * 2;
+            costs = Arrays.copyOf(costs, capacity);
+            this.lower = Arrays.copyOf(this.lower, capacity);
+            this.upper = Arrays.copyOf(this.upper, capacity);
+            columnRows = Arrays.copyOf(columnRows, capacity);
+            columnValues = Arrays.copyOf(columnValues, capacity);
+        }
+        costs[columns] = cost;
+        this.lower[columns] = lower;
+        this.upper[columns] = upper;
+        columnRows[columns] = rowIndices;
+        columnValues[columns] = rowValues;
+        return columns++;
+    }
+
+    /**
+     * Solves the problem with the columns added so far.
+     *
+     * @param deadline Value of System.nanoTime() at which to give up, 0 for no deadline
+     * @return false if the problem is unbounded or the deadline passed
+     */
+    public boolean maximize(long deadline) {
+        int structural = columns;
+        for (int r = 0; r < rows; r++)
+            addColumn(0, 0, Double.POSITIVE_INFINITY, new int[]{r}, new double[]{1});
+
+        values = new double[columns];
+        basis = new int[rows];
+        position = new int[columns];
+        Arrays.fill(position, -1);
+        inverse = new double[rows][rows];
+        for (int r = 0; r < rows; r++) {
+            basis[r] = structural + r;
+            position[structural + r] = r;
+            values[structural + r] = rhs[r];
+            inverse[r][r] = 1;
+        }
+        prices = new double[rows];
+        double[] direction = new double[rows];
+        int degenerate = 0;
+        iterations = 0;
+
+        while (true) {
+            if (deadline != 0 && System.nanoTime() > deadline)
+                return false;
+            iterations++;
+
+            // prices of the rows, from the costs of the basic variables
+            Arrays.fill(prices, 0);
+            for (int r = 0; r < rows; r++) {
+                double cost = costs[basis[r]];
+                if (cost != 0) {
+                    double[] row = inverse[r];
+                    for (int s = 0; s < rows; s++)
+                        prices[s] += cost * row[s];
+                }
+            }
+
+            boolean bland = degenerate >= DEGENERATE_PIVOTS;
+            int entering = -1;
+            double enteringCost = 0;
+            for (int q = 0; q < columns; q++) {
+                if (position[q] >= 0)
+                    continue;
+                double reduced = getReducedCost(q);
+                boolean improves = (reduced > TOLERANCE && values[q] < upper[q])
+                        || (reduced < -TOLERANCE && values[q] > lower[q]);
+                if (improves && (entering < 0 || (!bland && Math.abs(reduced) > Math.abs(enteringCost)))) {
+                    entering = q;
+                    enteringCost = reduced;
+                    if (bland)
+                        break;
+                }
+            }
+            if (entering < 0)
+                break;
+
+            // change of the basic variables as the entering one moves in its improving direction
+            double sign = enteringCost > 0 ? 1 : -1;
+            Arrays.fill(direction, 0);
+            int[] indices = columnRows[entering];
+            double[] entries = columnValues[entering];
+            for (int k = 0; k < indices.length; k++) {
+                for (int r = 0; r < rows; r++)
+                    direction[r] += inverse[r][indices[k]] * entries[k];
+            }
+
+            double step = upper[entering] - lower[entering];
+            int leaving = -1;
+            for (int r = 0; r < rows; r++) {
+                double change = -sign * direction[r];
+                int variable = basis[r];
+                double limit;
+                if (change < -TOLERANCE && lower[variable] != Double.NEGATIVE_INFINITY)
+                    limit = (values[variable] - lower[variable]) / -change;
+                else if (change > TOLERANCE && upper[variable] != Double.POSITIVE_INFINITY)
+                    limit = (upper[variable] - values[variable]) / change;
+                else
+                    continue;
+                limit = Math.max(0, limit);
+                boolean better = leaving < 0 ? limit < step : limit < step - TOLERANCE
+                        || (limit <= step + TOLERANCE && (bland ? variable < basis[leaving]
+                        : Math.abs(direction[r]) > Math.abs(direction[leaving])));
+                if (better) {
+                    step = limit;
+                    leaving = r;
+                }
+            }
+            if (step == Double.POSITIVE_INFINITY)
+                return false;
+            degenerate = step <= TOLERANCE ? degenerate + 1 : 0;
+
+            values[entering] += sign * step;
+            for (int r = 0; r < rows; r++)
+                values[basis[r]] -= sign * step * direction[r];
+            if (leaving < 0)
+                continue; // the entering variable went to its other bound
+
+            int out = basis[leaving];
+            values[out] = -sign * direction[leaving] < 0 ? lower[out] : upper[out];
+            position[out] = -1;
+            basis[leaving] = entering;
+            position[entering] = leaving;
+
+            double[] pivotRow = inverse[leaving];
+            double pivot = direction[leaving];
+            for (int s = 0; s < rows; s++)
+                pivotRow[s] /= pivot;
+            for (int r = 0; r < rows; r++) {
+                double factor = direction[r];
+                if (r != leaving && factor != 0) {
+                    double[] row = inverse[r];
+                    for (int s = 0; s < rows; s++)
+                        row[s] -= factor * pivotRow[s];
+                }
+            }
+        }
+
+        objective = 0;
+        for (int q = 0; q < structural; q++)
+            objective += costs[q] * values[q];
+        columns = structural;
+        return true;
+    }
+
+    private double getReducedCost(int column) {
+        double reduced = costs[column];
+        int[] indices = columnRows[column];
+        double[] entries = columnValues[column];
+        for (int k = 0; k < indices.length; k++)
+            reduced -= prices[indices[k]] * entries[k];
+        return reduced;
+    }
+
+    public double getObjective() {
+        return objective;
+    }
+
+    /**
+     * @param column Index of a variable
+     * @return Value of the variable in the solution
+     */
+    public double getValue(int column) {
+        return values[column];
+    }
+
+    /**
+     * @param row Row of A
+     * @return Dual value of the row in the solution, the value of the matching variable of the dual problem
+     */
+    public double getPrice(int row) {
+        return prices[row];
+    }
+
+    public int getIterations() {
+        return iterations;
+    }
+}
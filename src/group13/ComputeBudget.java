@@ -0,0 +1,154 @@
+package group13;
+
+import genius.core.timeline.TimeLineInfo;
+
+/**
+ * Time Agent13 may spend computing an offer, from the pace of the rounds on the timeline.
+ * <p>
+ * The time of the others is measured in normalized time, from the end of one chooseAction to the start of the
+ * next, so spending more does not give us more. An offer computed in the background overlaps that time and is not
+ * subtracted from it; only the wait for it at the start of chooseAction counts as ours. With a time deadline, a turn
+ * may take {@link #TURN_SHARE} of the time of the others, and at least what the default work costs; with a rounds
+ * deadline the timeline has no clock, so a turn does the default work. When the deadline is less than {@link #RESERVE_ROUNDS} rounds away, a turn does the
+ * least work, so the last rounds are not missed.
+ * <p>
+ * The budget, in nanoseconds, is shared by the stages of the turn: the frontier is brought up to date with the
+ * opponent models if its measured cost fits, and as many candidates are sampled and scored as the rest pays for,
+ * at the cost measured in the earlier turns.
+ */
+public class ComputeBudget {
+    //share of the time of the others a turn may take
+    public static final double TURN_SHARE = 0.25;
+    //rounds before a time deadline from which a turn does the least work
+    public static final double RESERVE_ROUNDS = 3;
+    public static final int MIN_BIDS = 2;
+    public static final int DEFAULT_BIDS = 10;
+    //above the parallel threshold of BidScorer, so a generous budget can use the fork-join pass
+    public static final int MAX_BIDS = 4 * BidScorer.PARALLEL_THRESHOLD;
+    //weight of the last measure in the moving averages
+    public static final double ALPHA = 0.2;
+
+    private final TimeLineInfo timeline;
+    //the same work every turn, whatever the pace, so a session can be replayed exactly
+    private final boolean fixed;
+    //normalized time our last chooseAction started and ended
+    private double actionStart;
+    private double actionEnd = -1;
+    //moving averages of the normalized time of the others in a round and of our chooseAction
+    private double othersTime = Double.NaN;
+    private double turnTime = Double.NaN;
+    //moving averages of the cost of each stage, in nanoseconds
+    private double bidNanos = Double.NaN;
+    private double frontierNanos = Double.NaN;
+
+    private double turnStartTime;
+    private long turnStart;
+    private long budget;
+
+    /**
+     * @param timeline Timeline of the negotiation
+     */
+    public ComputeBudget(TimeLineInfo timeline) {
+        this(timeline, false);
+    }
+
+    /**
+     * @param timeline Timeline of the negotiation
+     * @param fixed    true to do the default work in every turn, with the frontier always brought up to date, so
+     *                 the number of candidates (and of draws of the generator) does not depend on the clock
+     */
+    public ComputeBudget(TimeLineInfo timeline, boolean fixed) {
+        this.timeline = timeline;
+        this.fixed = fixed;
+    }
+
+    private static double average(double average, double value) {
+        return Double.isNaN(average) ? value : average + ALPHA * (value - average);
+    }
+
+    /**
+     * Called in chooseAction once no offer is computed in the background, to measure the time of the others.
+     *
+     * @param start Normalized time chooseAction started, before waiting for the offer computed in the background
+     */
+    public void startAction(double start) {
+        if (actionEnd >= 0)
+            othersTime = average(othersTime, Math.max(0, start - actionEnd));
+        actionStart = start;
+    }
+
+    /**
+     * Called when chooseAction returns, to measure our part of the round.
+     */
+    public void endAction() {
+        double now = timeline.getTime();
+        turnTime = average(turnTime, Math.max(0, now - actionStart));
+        actionEnd = now;
+    }
+
+    /**
+     * Called when an offer starts being computed, to set the budget of the turn.
+     */
+    public void startTurn() {
+        turnStart = System.nanoTime();
+        turnStartTime = timeline.getTime();
+        double minimum = Double.isNaN(bidNanos) ? 0 : DEFAULT_BIDS * bidNanos;
+        double nanos = minimum;
+        if (timeline.getType() == TimeLineInfo.Type.Time && !Double.isNaN(othersTime))
+            nanos = Math.max(TURN_SHARE * othersTime * timeline.getTotalTime() * 1e9, minimum);
+
+        if (!Double.isNaN(othersTime)) {
+            double round = othersTime + (Double.isNaN(turnTime) ? 0 : turnTime);
+            if (1 - turnStartTime < RESERVE_ROUNDS * round)
+                nanos = 0;
+        }
+        budget = (long) nanos;
+    }
+
+    /**
+     * @return Budget of the turn in nanoseconds
+     */
+    public long getBudget() {
+        return budget;
+    }
+
+    /**
+     * @return What is left of the budget of the turn, in nanoseconds
+     */
+    public long getRemaining() {
+        return budget - (System.nanoTime() - turnStart);
+    }
+
+    /**
+     * @return true if the frontier may be brought up to date in this turn
+     */
+    public boolean canUpdateFrontier() {
+        return fixed || Double.isNaN(frontierNanos) || frontierNanos <= getRemaining();
+    }
+
+    /**
+     * @param nanos Time the frontier took to be brought up to date
+     */
+    public void recordFrontier(long nanos) {
+        frontierNanos = average(frontierNanos, nanos);
+    }
+
+    /**
+     * @return Number of candidates to sample and score in what is left of the turn
+     */
+    public int getNumberOfBids() {
+        if (fixed || Double.isNaN(bidNanos))
+            return DEFAULT_BIDS;
+        double bids = getRemaining() / Math.max(1, bidNanos);
+        return (int) Math.max(MIN_BIDS, Math.min(MAX_BIDS, bids));
+    }
+
+    /**
+     * @param bids  Number of candidates sampled and scored
+     * @param nanos Time they took
+     */
+    public void recordBids(int bids, long nanos) {
+        if (bids > 0)
+            bidNanos = average(bidNanos, (double) nanos / bids);
+    }
+}
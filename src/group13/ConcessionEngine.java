@@ -0,0 +1,141 @@
+package group13;
+
+/**
+ * Utility threshold of Agent13 over time: best - (best - worst) * concession.
+ * <p>
+ * The concession comes from one of the strategies:
+ * <ul>
+ * <li>BOULWARE, LINEAR, CONCEDER: fixed time-dependent curves</li>
+ * <li>TIT_FOR_TAT: concedes as much as the opponents conceded to us, and at least as much as Boulware</li>
+ * <li>ADAPTIVE (default): Boulware, with a rate that follows the concession of the most stubborn opponent over
+ * time: the more of our range they are expected to concede before the deadline, from the slope of our utility of
+ * their offers, the longer we wait; once the end is near, a hard-headed opponent gets the hard-headed rate</li>
+ * </ul>
+ * The strategy can be chosen with the system property group13.concession.
+ */
+public class ConcessionEngine {
+    public enum Strategy {BOULWARE, LINEAR, CONCEDER, TIT_FOR_TAT, ADAPTIVE}
+
+    public static final double BOULWARE_RATE = 0.2;
+    public static final double CONCEDER_RATE = 2;
+    //every strategy checks for a hard-headed opponent when this share of the negotiation has gone, and the adaptive
+    //one adapts its curve to it
+    public static final double ADAPT_TIME = 0.85;
+    //step of the adaptive rate, so a bounded number of curves is built
+    public static final double RATE_STEP = 0.01;
+    //range of the utility of the offers received, for us, up to which the opponent is hard-headed
+    public static final double HARD_HEADED_RANGE = 0.3;
+    //range from which the opponent is conceding, so we can afford to wait
+    public static final double CONCEDING_RANGE = 0.4;
+    public static final double HARD_HEADED_RATE = 0.04;
+    public static final double CONCEDING_RATE = 0.02;
+
+    private final Strategy strategy;
+    private double best;
+    private double worst;
+    private ConcessionCurve curve;
+    private boolean adapted;
+    private boolean opponentIsHardHeaded;
+    //share of our range the opponents conceded, for tit for tat
+    private double opponentConcession;
+
+    /**
+     * @param strategy Strategy to follow
+     * @param best     Utility of our best bid
+     * @param worst    Utility of our worst bid
+     */
+    public ConcessionEngine(Strategy strategy, double best, double worst) {
+        this.strategy = strategy;
+        this.best = best;
+        this.worst = worst;
+        switch (strategy) {
+            case LINEAR:
+                this.curve = ConcessionCurve.of(1);
+                break;
+            case CONCEDER:
+                this.curve = ConcessionCurve.of(CONCEDER_RATE);
+                break;
+            default:
+                this.curve = ConcessionCurve.of(BOULWARE_RATE);
+        }
+    }
+
+    /**
+     * Moves the range of the threshold, e.g. when a refined estimate of our utility was published.
+     *
+     * @param best  Utility of our best bid
+     * @param worst Utility of our worst bid
+     */
+    public void setBounds(double best, double worst) {
+        this.best = best;
+        this.worst = worst;
+    }
+
+    /**
+     * @return Strategy named by the group13.concession system property, ADAPTIVE by default
+     */
+    public static Strategy getConfiguredStrategy() {
+        return Strategy.valueOf(System.getProperty("group13.concession", "adaptive").toUpperCase());
+    }
+
+    /**
+     * Informs the engine of how the opponents behaved so far, before asking for a threshold.
+     *
+     * @param time          Normalized time
+     * @param receivedRange Difference between the best and the worst offer received, for us, of the most
+     *                      stubborn opponent
+     * @param slope         Change per unit of time of our utility of the offers of the most stubborn opponent
+     * @return true when this call found the opponent hard-headed, which every strategy checks once at
+     * {@link #ADAPT_TIME}
+     */
+    public boolean update(double time, double receivedRange, double slope) {
+        this.opponentConcession = best > worst ? Math.max(0, receivedRange) / (best - worst) : 0;
+        if (adapted)
+            return false;
+        boolean adaptive = strategy == Strategy.ADAPTIVE;
+        if (time < ADAPT_TIME) {
+            if (adaptive) {
+                // share of our range the opponent should still concede, from Boulware when they do not move to waiting
+                double expected = best > worst ? Math.max(0, slope) * (1 - time) / (best - worst) : 0;
+                double rate = BOULWARE_RATE + (CONCEDING_RATE - BOULWARE_RATE) * Math.min(1, expected);
+                curve = ConcessionCurve.of(Math.max(CONCEDING_RATE, Math.round(rate / RATE_STEP) * RATE_STEP));
+            }
+            return false;
+        }
+
+        // every strategy detects a hard-headed opponent, only the adaptive one changes its curve
+        adapted = true;
+        if (receivedRange <= HARD_HEADED_RANGE) {
+            opponentIsHardHeaded = true;
+            if (adaptive)
+                curve = ConcessionCurve.of(HARD_HEADED_RATE);
+            return true;
+        } else if (receivedRange > CONCEDING_RANGE && adaptive) {
+            curve = ConcessionCurve.of(CONCEDING_RATE); // let them conceed
+        }
+        return false;
+    }
+
+    /**
+     * @param time Normalized time
+     * @return Lowest utility we accept or offer at that time
+     */
+    public double getThreshold(double time) {
+        double concession = curve.getConcession(time);
+        if (strategy == Strategy.TIT_FOR_TAT)
+            concession = Math.max(concession, Math.min(1, opponentConcession));
+        return best - (best - worst) * concession;
+    }
+
+    public double getConcessionRate() {
+        return curve.getConcessionRate();
+    }
+
+    public boolean isOpponentHardHeaded() {
+        return opponentIsHardHeaded;
+    }
+
+    public Strategy getStrategy() {
+        return strategy;
+    }
+}
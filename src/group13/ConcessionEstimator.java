@@ -0,0 +1,174 @@
+package group13;
+
+/**
+ * Streaming statistics of a series of utilities over the negotiation time, updated in constant time per value.
+ * <ul>
+ * <li>mean and standard deviation of the values before the last one, in a window of the last values
+ * (ring buffer), to spot a sudden change</li>
+ * <li>exponentially weighted mean and variance (volatility)</li>
+ * <li>exponentially weighted least squares line of the value over time: slope (concession per unit of time)
+ * and value predicted at the deadline</li>
+ * </ul>
+ */
+public class ConcessionEstimator {
+    public static final int DEFAULT_WINDOW = 15;
+    //weight of a new value in the exponentially weighted mean and variance
+    private static final double ALPHA = 0.1;
+    //weight kept by the older values in the regression at every new value
+    private static final double FORGETTING = 0.98;
+
+    private final int window;
+    //the last window + 1 values; the window is every value but the newest
+    private final double[] ring;
+    private int next;
+    private int count;
+    private double windowSum;
+    private double windowSquares;
+
+    private double mean;
+    private double variance;
+
+    private double weight;
+    private double sumTime;
+    private double sumValue;
+    private double sumTimeSquares;
+    private double sumTimeValue;
+    private double lastValue;
+
+    public ConcessionEstimator() {
+        this(DEFAULT_WINDOW);
+    }
+
+    /**
+     * @param window Number of values before the last one used to spot a sudden change
+     */
+    public ConcessionEstimator(int window) {
+        this.window = window;
+        this.ring = new double[window + 1];
+    }
+
+    /**
+     * @param time  Normalized time of the value
+     * @param value Utility
+     */
+    public void add(double time, double value) {
+        // the previous newest value joins the window, and the oldest one leaves it
+        if (count > 0) {
+            double previous = ring[(next + ring.length - 1) % ring.length];
+            windowSum += previous;
+            windowSquares += previous * previous;
+        }
+        if (count > window) {
+            double oldest = ring[next];
+            windowSum -= oldest;
+            windowSquares -= oldest * oldest;
+        }
+        ring[next] = value;
+        next = (next + 1) % ring.length;
+        count++;
+
+        if (count == 1) {
+            mean = value;
+        } else {
+            double delta = value - mean;
+            mean += ALPHA * delta;
+            variance = (1 - ALPHA) * (variance + ALPHA * delta * delta);
+        }
+
+        weight = FORGETTING * weight + 1;
+        sumTime = FORGETTING * sumTime + time;
+        sumValue = FORGETTING * sumValue + value;
+        sumTimeSquares = FORGETTING * sumTimeSquares + time * time;
+        sumTimeValue = FORGETTING * sumTimeValue + time * value;
+        lastValue = value;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    /**
+     * @return Number of values in the window
+     */
+    private int windowSize() {
+        return Math.min(count - 1, window);
+    }
+
+    /**
+     * @return Mean of the window, 0 if it is empty
+     */
+    public double getWindowMean() {
+        int n = windowSize();
+        return n <= 0 ? 0 : windowSum / n;
+    }
+
+    /**
+     * @return Standard deviation of the window, 0 if it is empty
+     */
+    public double getWindowDeviation() {
+        int n = windowSize();
+        if (n <= 0)
+            return 0;
+        double mean = windowSum / n;
+        return Math.sqrt(Math.max(0, windowSquares / n - mean * mean));
+    }
+
+    /**
+     * @param value  Utility
+     * @param sigmas Number of standard deviations
+     * @return true if the value is more than the given deviations below the mean of the window
+     */
+    public boolean isSuddenDecrease(double value, double sigmas) {
+        return value <= getWindowMean() - sigmas * getWindowDeviation();
+    }
+
+    /**
+     * @param value  Utility
+     * @param sigmas Number of standard deviations
+     * @return true if the value is more than the given deviations above the mean of the window
+     */
+    public boolean isSuddenIncrease(double value, double sigmas) {
+        return value >= getWindowMean() + sigmas * getWindowDeviation();
+    }
+
+    public double getMean() {
+        return mean;
+    }
+
+    /**
+     * @return Exponentially weighted standard deviation of the values
+     */
+    public double getVolatility() {
+        return Math.sqrt(variance);
+    }
+
+    /**
+     * @return Change of the value per unit of normalized time, 0 until two distinct times were seen
+     */
+    public double getSlope() {
+        double denominator = weight * sumTimeSquares - sumTime * sumTime;
+        if (count < 2 || denominator <= 1e-12)
+            return 0;
+        return (weight * sumTimeValue - sumTime * sumValue) / denominator;
+    }
+
+    /**
+     * @param time Normalized time
+     * @return Value the regression line predicts at that time, the last value while there is no slope
+     */
+    public double predict(double time) {
+        if (count == 0)
+            return 0;
+        double slope = getSlope();
+        if (slope == 0)
+            return lastValue;
+        return (sumValue - slope * sumTime) / weight + slope * time;
+    }
+
+    /**
+     * @return Value predicted at the deadline
+     */
+    public double getPredictedFinal() {
+        return predict(1);
+    }
+}
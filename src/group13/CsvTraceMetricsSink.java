@@ -0,0 +1,47 @@
+package group13;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+
+/**
+ * Writes every measure of a session as a line time;metric;value, buffered until the negotiation ends.
+ * A line is written under the lock of the sink, so lines of different threads do not interleave.
+ */
+public class CsvTraceMetricsSink implements MetricsSink {
+    private final BufferedWriter writer;
+
+    public CsvTraceMetricsSink(String file) throws IOException {
+        this.writer = new BufferedWriter(new FileWriter(file), 1 << 16);
+        this.writer.write("time;metric;value");
+        this.writer.newLine();
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return true;
+    }
+
+    @Override
+    public synchronized void record(Metric metric, double time, double value) {
+        try {
+            writer.write(Double.toString(time));
+            writer.write(';');
+            writer.write(metric.name());
+            writer.write(';');
+            writer.write(Double.toString(value));
+            writer.newLine();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            writer.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package group13;
+
+import genius.core.issue.Issue;
+import genius.core.issue.Value;
+import genius.core.issue.ValueDiscrete;
+import genius.core.issue.ValueInteger;
+import genius.core.issue.ValueReal;
+import genius.core.utility.AbstractUtilitySpace;
+import genius.core.utility.AdditiveUtilitySpace;
+import genius.core.utility.Evaluator;
+import genius.core.utility.EvaluatorDiscrete;
+import genius.core.utility.EvaluatorInteger;
+import genius.core.utility.EvaluatorReal;
+
+/**
+ * Flat copy of an additive utility space, evaluated directly on encoded bids.
+ * Integer and real issues are evaluated at the value standing for each bin of the encoding, so it is meant for the
+ * bids built from the encoding; a bid with other values is evaluated exactly by its utility space.
+ */
+public class EncodedUtilitySpace {
+    private final BidEncoder encoder;
+    private final double[] weights;
+    private final double[][] valueUtilities;
+
+    /**
+     * Copies the weights and the normalized evaluation of every value of an additive utility space.
+     *
+     * @param encoder Index of the domain
+     * @param space   Additive utility space on the same domain
+     */
+    public EncodedUtilitySpace(BidEncoder encoder, AdditiveUtilitySpace space) {
+        this.encoder = encoder;
+        int n = encoder.getNumberOfIssues();
+        this.weights = new double[n];
+        this.valueUtilities = new double[n][];
+
+        for (int i = 0; i < n; i++) {
+            Issue issue = encoder.getIssue(i);
+            Evaluator evaluator = space.getEvaluator(issue);
+
+            this.weights[i] = space.getWeight(issue.getNumber());
+            this.valueUtilities[i] = new double[encoder.getNumberOfValues(i)];
+            for (int v = 0; v < this.valueUtilities[i].length; v++) {
+                try {
+                    this.valueUtilities[i][v] = getEvaluation(evaluator, encoder.getValue(i, v));
+                } catch (Exception e) {
+                    this.valueUtilities[i][v] = 0;
+                }
+            }
+        }
+    }
+
+    /**
+     * Wraps weights and value utilities that were already computed on the encoding.
+     *
+     * @param encoder        Index of the domain
+     * @param weights        Weight of each issue
+     * @param valueUtilities Utility of each value of each issue
+     */
+    public EncodedUtilitySpace(BidEncoder encoder, double[] weights, double[][] valueUtilities) {
+        this.encoder = encoder;
+        this.weights = weights;
+        this.valueUtilities = valueUtilities;
+    }
+
+    /**
+     * @param encoder Index of the domain
+     * @param space   Utility space on the same domain
+     * @return Flat copy of the space if it is additive, its current estimate if it is estimated, null otherwise
+     */
+    public static EncodedUtilitySpace of(BidEncoder encoder, AbstractUtilitySpace space) {
+        if (space instanceof AdditiveUtilitySpace)
+            return new EncodedUtilitySpace(encoder, (AdditiveUtilitySpace) space);
+        if (space instanceof EstimatedUtilitySpace)
+            return ((EstimatedUtilitySpace) space).getEncodedUtilitySpace();
+        return null;
+    }
+
+    /**
+     * @param evaluator Evaluator of an issue
+     * @param value     Value of the issue
+     * @return Normalized evaluation of the value
+     */
+    private static double getEvaluation(Evaluator evaluator, Value value) {
+        if (evaluator instanceof EvaluatorInteger)
+            return ((EvaluatorInteger) evaluator).getEvaluation(((ValueInteger) value).getValue());
+        if (evaluator instanceof EvaluatorReal)
+            return ((EvaluatorReal) evaluator).getEvaluation(((ValueReal) value).getValue());
+        return ((EvaluatorDiscrete) evaluator).getEvaluation((ValueDiscrete) value);
+    }
+
+    /**
+     * Additive utilities are maximized issue by issue, without going through the bids of the domain.
+     *
+     * @param out Array with one position per issue
+     * @return the given array, with the index of the best value of each issue
+     */
+    public int[] getMaxUtilityBid(int[] out) {
+        return getExtremeBid(out, 1);
+    }
+
+    /**
+     * @param out Array with one position per issue
+     * @return the given array, with the index of the worst value of each issue
+     */
+    public int[] getMinUtilityBid(int[] out) {
+        return getExtremeBid(out, -1);
+    }
+
+    private int[] getExtremeBid(int[] out, int sign) {
+        for (int i = 0; i < weights.length; i++) {
+            out[i] = 0;
+            for (int v = 1; v < valueUtilities[i].length; v++)
+                if (sign * valueUtilities[i][v] > sign * valueUtilities[i][out[i]])
+                    out[i] = v;
+        }
+        return out;
+    }
+
+    public BidEncoder getEncoder() {
+        return encoder;
+    }
+
+    /**
+     * @param encoded Index of the value of each issue
+     * @return Utility of the bid
+     */
+    public double getUtility(int[] encoded) {
+        double utility = 0;
+        for (int i = 0; i < weights.length; i++)
+            utility += weights[i] * valueUtilities[i][encoded[i]];
+        return utility;
+    }
+
+    public double getWeight(int issue) {
+        return weights[issue];
+    }
+
+    public double getValueUtility(int issue, int value) {
+        return valueUtilities[issue][value];
+    }
+}
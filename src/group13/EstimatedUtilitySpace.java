@@ -0,0 +1,65 @@
+package group13;
+
+import genius.core.Bid;
+import genius.core.utility.AbstractUtilitySpace;
+import genius.core.xml.SimpleElement;
+
+/**
+ * Utility space of Genius over the estimate of {@link UncertaintyModelling}, so the estimate can be our utility
+ * space under uncertainty. It always evaluates the latest published estimate, on the encoding of the domain,
+ * so it covers integer and real issues too, where the factory of Genius only has evaluators for discrete ones.
+ * The reservation value is 0, as in the spaces of that factory.
+ */
+public class EstimatedUtilitySpace extends AbstractUtilitySpace {
+    private final UncertaintyModelling model;
+
+    /**
+     * @param model Estimation whose estimate is evaluated
+     */
+    public EstimatedUtilitySpace(UncertaintyModelling model) {
+        super(model.getEncoder().getDomain());
+        this.model = model;
+    }
+
+    /**
+     * @return Latest published estimate, evaluated on encoded bids
+     */
+    public EncodedUtilitySpace getEncodedUtilitySpace() {
+        return this.model.getEncodedUtilitySpace();
+    }
+
+    @Override
+    public double getUtility(Bid bid) {
+        return this.model.getUtility(this.model.getEncoder().encode(bid));
+    }
+
+    @Override
+    public Bid getMaxUtilityBid() {
+        int[] encoded = new int[this.model.getEncoder().getNumberOfIssues()];
+        return this.model.getEncoder().decode(getEncodedUtilitySpace().getMaxUtilityBid(encoded));
+    }
+
+    @Override
+    public Bid getMinUtilityBid() {
+        int[] encoded = new int[this.model.getEncoder().getNumberOfIssues()];
+        return this.model.getEncoder().decode(getEncodedUtilitySpace().getMinUtilityBid(encoded));
+    }
+
+    @Override
+    public EstimatedUtilitySpace copy() {
+        return new EstimatedUtilitySpace(this.model);
+    }
+
+    /**
+     * @return null, every issue of the domain has an estimate
+     */
+    @Override
+    public String isComplete() {
+        return null;
+    }
+
+    @Override
+    public SimpleElement toXML() {
+        return new SimpleElement("utility_space");
+    }
+}
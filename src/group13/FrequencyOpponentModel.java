@@ -0,0 +1,219 @@
+package group13;
+
+import genius.core.Bid;
+import genius.core.Domain;
+
+import java.util.Arrays;
+
+/**
+ * Opponent model from the frequency of the values in the offers: the weight of an issue grows with how often the
+ * opponent repeats its values, and a value scores by its rank among the values of the issue.
+ */
+public class FrequencyOpponentModel implements OpponentModel {
+    private final BidEncoder encoder;
+    private int[][] frequency;
+    private double[] weights;
+    //sum of the square of frequency of the values of each issue, and over all issues
+    private long[] sumSquares;
+    private long totalSquares;
+    //valuesAbove[i][f] is the number of values of issue i with a frequency higher than f
+    private int[][] valuesAbove;
+    //reused to encode received bids without allocating
+    private final int[] encodedBid;
+    public int numberOfBids;
+
+    /**
+     * Instantiates a new opponent model.
+     *
+     * @param d Negotiation Domain
+     */
+    public FrequencyOpponentModel(Domain d) {
+        this(new BidEncoder(d));
+    }
+
+    /**
+     * Instantiates a new opponent model sharing the index of the domain.
+     *
+     * @param encoder Index of the negotiation domain
+     */
+    public FrequencyOpponentModel(BidEncoder encoder) {
+        this.encoder = encoder;
+        this.encodedBid = new int[encoder.getNumberOfIssues()];
+        buildData();
+    }
+
+    /**
+     * Calculates the value of a received bid, based on the predicted model
+     *
+     * @param b Bid received
+     * @return predicted  utility value
+     */
+    @Override
+    public double getValue(Bid b) {
+        return getValue(this.encoder.encode(b, this.encodedBid));
+    }
+
+    /**
+     * Calculates the value of an encoded bid, based on the predicted model
+     *
+     * @param encoded Index of the value of each issue
+     * @return predicted utility value
+     */
+    @Override
+    public double getValue(int[] encoded) {
+        double utility = 0;
+
+        for (int issueKey = 0; issueKey < this.weights.length; issueKey++)
+            utility += this.weights[issueKey] * getValuesOfOption(issueKey, encoded[issueKey]);
+
+        return utility;
+    }
+
+    /**
+     * Part of the predicted utility that comes from one value of an issue
+     *
+     * @param issueKey Issue
+     * @param valueKey Option of the issue
+     * @return Weight of the issue times the value of the option
+     */
+    @Override
+    public double getContribution(int issueKey, int valueKey) {
+        return this.weights[issueKey] * getValuesOfOption(issueKey, valueKey);
+    }
+
+    /**
+     * When it receives a new bid, it updates the model
+     *
+     * @param b Bid received
+     * @return Predicted utility of bid in the updated model
+     */
+    public double updateFrequency(Bid b) {
+        return updateFrequency(this.encoder.encode(b, this.encodedBid));
+    }
+
+    /**
+     * The frequencies do not depend on the time of the offer.
+     */
+    @Override
+    public double update(int[] encoded, double time) {
+        return updateFrequency(encoded);
+    }
+
+    /**
+     * When it receives a new encoded bid, it updates the model.
+     * Only the counters of the values used in the bid change, so the update is constant time per issue.
+     *
+     * @param encoded Index of the value of each issue
+     * @return Predicted utility of bid in the updated model
+     */
+    public double updateFrequency(int[] encoded) {
+        this.numberOfBids += 1;
+
+        for (int issueKey = 0; issueKey < this.frequency.length; issueKey++) {
+            int freq = this.frequency[issueKey][encoded[issueKey]]++;
+
+            //(f+1)^2 - f^2: keeps the sum of the square of frequency of each value of the issue
+            this.sumSquares[issueKey] += 2L * freq + 1;
+            this.totalSquares += 2L * freq + 1;
+
+            //the value now has a higher frequency than every other value that had the same frequency
+            if (freq + 1 >= this.valuesAbove[issueKey].length)
+                this.valuesAbove[issueKey] = Arrays.copyOf(this.valuesAbove[issueKey], 2 * (freq + 1));
+            this.valuesAbove[issueKey][freq] += 1;
+        }
+
+        return updateWeights(encoded);
+    }
+
+    /**
+     * Adds counts learned before this negotiation, as if the opponent had made those offers already.
+     *
+     * @param prior Number of offers using each value of each issue; every issue sums to the same number of offers
+     */
+    @Override
+    public void addPrior(int[][] prior) {
+        for (int issueKey = 0; issueKey < this.frequency.length; issueKey++) {
+            int[] freq = this.frequency[issueKey];
+            int maxFrequency = 0;
+            for (int valueKey = 0; valueKey < freq.length; valueKey++) {
+                freq[valueKey] += prior[issueKey][valueKey];
+                maxFrequency = Math.max(maxFrequency, freq[valueKey]);
+            }
+
+            this.totalSquares -= this.sumSquares[issueKey];
+            this.sumSquares[issueKey] = 0;
+            this.valuesAbove[issueKey] = new int[Math.max(16, 2 * (maxFrequency + 1))];
+            for (int f : freq) {
+                this.sumSquares[issueKey] += (long) f * f;
+                for (int below = 0; below < f; below++)
+                    this.valuesAbove[issueKey][below] += 1;
+            }
+            this.totalSquares += this.sumSquares[issueKey];
+        }
+        if (prior.length > 0)
+            for (int f : prior[0])
+                this.numberOfBids += f;
+
+        for (int issueKey = 0; issueKey < this.weights.length; issueKey++)
+            this.weights[issueKey] = this.totalSquares == 0 ? 0 : (double) this.sumSquares[issueKey] / this.totalSquares;
+    }
+
+    @Override
+    public int getNumberOfBids() {
+        return this.numberOfBids;
+    }
+
+    /**
+     * Updates the weights of each issue.
+     * The weight of an issue is the sum of the square of frequency of each value divided by the number of bids
+     * squared, normalized over all issues, so the number of bids cancels out.
+     *
+     * @param valuesUsed Values/Options of each issue in the bid
+     * @return Predicted utility of bid in the updated model
+     */
+    private double updateWeights(int[] valuesUsed) {
+        double utility = 0;
+
+        for (int issueKey = 0; issueKey < this.weights.length; issueKey++) {
+            this.weights[issueKey] = (double) this.sumSquares[issueKey] / this.totalSquares;
+            utility += this.weights[issueKey] * getValuesOfOption(issueKey, valuesUsed[issueKey]);
+        }
+
+        return utility;
+    }
+
+    /**
+     * Gets the order of the current option in the list of the options of an issue
+     *
+     * @param issueKey Current Issue
+     * @param valueKey Option used for the current issue in the bid
+     * @return Value of the option
+     */
+    private double getValuesOfOption(int issueKey, int valueKey) {
+        int size = frequency[issueKey].length;
+        int order = 1 + valuesAbove[issueKey][frequency[issueKey][valueKey]];
+
+        return (double) (size - order + 1) / size;
+    }
+
+    /**
+     * Pre-builds the data to setup the class
+     */
+    private void buildData() {
+        this.numberOfBids = 0;
+
+        int issues = this.encoder.getNumberOfIssues();
+        this.frequency = new int[issues][];
+        this.weights = new double[issues];
+        this.sumSquares = new long[issues];
+        this.totalSquares = 0;
+        this.valuesAbove = new int[issues][];
+
+        for (int issueKey = 0; issueKey < issues; issueKey++) {
+            this.frequency[issueKey] = new int[this.encoder.getNumberOfValues(issueKey)];
+            this.valuesAbove[issueKey] = new int[16];
+        }
+    }
+
+
+}
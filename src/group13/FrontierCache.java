@@ -0,0 +1,260 @@
+package group13;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Pareto frontier between our utility and the mean predicted utility of the opponents, kept up to date
+ * while the opponent models learn.
+ * <p>
+ * The candidates (the whole domain, or a sample of bigger ones like in {@link ParetoFrontier}) are sorted once by
+ * our utility, descending, and indexed by the values they use. When the models change, only the candidates
+ * using a value whose contribution moved by more than {@link #EPSILON} over the number of issues since it was last
+ * applied are updated, and the frontier is scanned again from the first of them: the part before only depends on
+ * the candidates before. A frequency model moves every contribution a little on every offer; the small moves add
+ * up until they pass the tolerance, so the utility of a candidate for the opponents is never more than EPSILON
+ * away from the models, and most offers late in the negotiation update nothing.
+ * Queries then work on the frontier alone, in logarithmic or constant time.
+ */
+public class FrontierCache {
+    //largest error of the utility of a candidate for the opponents, against the models
+    public static final double EPSILON = 0.01;
+
+    private final BidEncoder encoder;
+    private final int issues;
+    //change of the contribution of a value below which the candidates using it are left as they are
+    private final double tolerance;
+    private final int[] offsets;
+    //encoded candidates, one after the other, by descending utility for us
+    private final int[] bids;
+    private final double[] own;
+    private final double[] opponent;
+    //positions of the candidates using each value, ascending: from start[k] to start[k + 1]
+    private final int[] start;
+    private final int[] positions;
+    //contribution of each value when the utilities of the opponent were last updated
+    private final double[] contributions;
+
+    //positions of the candidates on the frontier, ascending
+    private int[] frontier;
+    private int frontierSize;
+    private int nash = -1;
+    private double nashOwnReservation = Double.NaN;
+
+    /**
+     * @param ownSpace Our utility
+     * @param random   Generator used to sample bigger domains
+     */
+    public FrontierCache(EncodedUtilitySpace ownSpace, Random random) {
+        this.encoder = ownSpace.getEncoder();
+        this.issues = encoder.getNumberOfIssues();
+        this.tolerance = EPSILON / Math.max(1, issues);
+        this.offsets = new int[issues];
+        int totalValues = 0;
+        for (int i = 0; i < issues; i++) {
+            this.offsets[i] = totalValues;
+            totalValues += encoder.getNumberOfValues(i);
+        }
+
+        long total = encoder.getNumberOfBids();
+        boolean enumerate = total <= BidIndex.MAX_ENUMERATED;
+        int size = enumerate ? (int) total : BidIndex.SAMPLE_SIZE;
+
+        int[] unsorted = new int[size * issues];
+        double[] unsortedUtilities = new double[size];
+        int[] current = new int[issues];
+        for (int b = 0; b < size; b++) {
+            if (enumerate) {
+                encoder.unpack(b, current);
+            } else {
+                for (int i = 0; i < issues; i++)
+                    current[i] = random.nextInt(encoder.getNumberOfValues(i));
+            }
+            System.arraycopy(current, 0, unsorted, b * issues, issues);
+            unsortedUtilities[b] = ownSpace.getUtility(current);
+        }
+
+        Integer[] order = new Integer[size];
+        for (int b = 0; b < size; b++)
+            order[b] = b;
+        Arrays.sort(order, (x, y) -> Double.compare(unsortedUtilities[y], unsortedUtilities[x]));
+
+        this.bids = new int[size * issues];
+        this.own = new double[size];
+        this.opponent = new double[size];
+        int[] uses = new int[totalValues + 1];
+        for (int p = 0; p < size; p++) {
+            System.arraycopy(unsorted, order[p] * issues, this.bids, p * issues, issues);
+            this.own[p] = unsortedUtilities[order[p]];
+            for (int i = 0; i < issues; i++)
+                uses[offsets[i] + this.bids[p * issues + i] + 1]++;
+        }
+
+        this.start = new int[totalValues + 1];
+        for (int k = 0; k < totalValues; k++)
+            this.start[k + 1] = this.start[k] + uses[k + 1];
+        this.positions = new int[size * issues];
+        int[] filled = Arrays.copyOf(this.start, totalValues);
+        for (int p = 0; p < size; p++) {
+            for (int i = 0; i < issues; i++)
+                this.positions[filled[offsets[i] + this.bids[p * issues + i]]++] = p;
+        }
+
+        this.contributions = new double[totalValues];
+        this.frontier = new int[Math.min(size, 64)];
+        scan(0);
+    }
+
+    /**
+     * Brings the utilities of the opponents up to date with their models.
+     *
+     * @param opponents Opponent models
+     * @return Number of candidates whose utility for the opponents changed
+     */
+    public int update(OpponentModelManager opponents) {
+        if (opponents.size() == 0)
+            return 0;
+
+        int first = own.length;
+        int updated = 0;
+        for (int i = 0; i < issues; i++) {
+            for (int v = 0; v < encoder.getNumberOfValues(i); v++) {
+                int k = offsets[i] + v;
+                double contribution = opponents.getSumContribution(i, v) / opponents.size();
+                double delta = contribution - contributions[k];
+                if (Math.abs(delta) <= tolerance)
+                    continue;
+                contributions[k] = contribution;
+                for (int u = start[k]; u < start[k + 1]; u++)
+                    opponent[positions[u]] += delta;
+                updated += start[k + 1] - start[k];
+                if (start[k + 1] > start[k])
+                    first = Math.min(first, positions[start[k]]);
+            }
+        }
+        if (first < own.length)
+            scan(first);
+        return updated;
+    }
+
+    /**
+     * Rebuilds the frontier from a candidate on, keeping the points before it.
+     */
+    private void scan(int from) {
+        int kept = 0;
+        while (kept < frontierSize && frontier[kept] < from)
+            kept++;
+        frontierSize = kept;
+        double best = kept == 0 ? Double.NEGATIVE_INFINITY : opponent[frontier[kept - 1]];
+
+        for (int p = from; p < own.length; p++) {
+            if (opponent[p] <= best)
+                continue;
+            // with the same utility for us, the better one for the opponents dominates
+            if (frontierSize > 0 && own[frontier[frontierSize - 1]] == own[p])
+                frontierSize--;
+            if (frontierSize == frontier.length)
+                frontier = Arrays.copyOf(frontier, frontierSize * 2);
+            frontier[frontierSize++] = p;
+            best = opponent[p];
+        }
+        nash = -1;
+    }
+
+    public int size() {
+        return frontierSize;
+    }
+
+    public double getOwnUtility(int point) {
+        return own[frontier[point]];
+    }
+
+    public double getOpponentUtility(int point) {
+        return opponent[frontier[point]];
+    }
+
+    /**
+     * @param point Position on the frontier
+     * @param out   Array with one position per issue
+     * @return the given array
+     */
+    public int[] getBid(int point, int[] out) {
+        System.arraycopy(bids, frontier[point] * issues, out, 0, issues);
+        return out;
+    }
+
+    /**
+     * Constant time until the frontier changes.
+     *
+     * @param ownReservation Our reservation value
+     * @return Position of the Nash solution (highest product of our utility over the reservation value and the
+     * utility of the opponents), -1 if no point is above the reservation value
+     */
+    public int getNash(double ownReservation) {
+        if (nash >= 0 && ownReservation == nashOwnReservation)
+            return nash;
+        int result = -1;
+        double best = Double.NEGATIVE_INFINITY;
+        for (int p = 0; p < frontierSize; p++) {
+            double product = (getOwnUtility(p) - ownReservation) * getOpponentUtility(p);
+            if (getOwnUtility(p) >= ownReservation && product > best) {
+                best = product;
+                result = p;
+            }
+        }
+        nash = result;
+        nashOwnReservation = ownReservation;
+        return result;
+    }
+
+    /**
+     * The Kalai-Smorodinsky solution gives both sides the same share of their best gain. Along the frontier our
+     * share decreases and theirs increases, so it is found by binary search.
+     *
+     * @param ownReservation Our reservation value
+     * @return Position of the point with the highest smaller share, -1 if the frontier is empty
+     */
+    public int getKalai(double ownReservation) {
+        if (frontierSize == 0)
+            return -1;
+        double ownRange = getOwnUtility(0) - ownReservation;
+        double opponentRange = getOpponentUtility(frontierSize - 1);
+        if (ownRange <= 0 || opponentRange <= 0)
+            return 0;
+
+        // first point where the opponents get at least our share
+        int low = 0, high = frontierSize - 1;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (getOpponentUtility(middle) / opponentRange >= (getOwnUtility(middle) - ownReservation) / ownRange)
+                high = middle;
+            else
+                low = middle + 1;
+        }
+        if (low > 0 && getShare(low - 1, ownReservation, ownRange, opponentRange)
+                > getShare(low, ownReservation, ownRange, opponentRange))
+            return low - 1;
+        return low;
+    }
+
+    private double getShare(int point, double ownReservation, double ownRange, double opponentRange) {
+        return Math.min((getOwnUtility(point) - ownReservation) / ownRange, getOpponentUtility(point) / opponentRange);
+    }
+
+    /**
+     * @param threshold Lowest utility for us
+     * @return Position of the point best for the opponents among those worth the threshold for us,
+     * -1 if there is none
+     */
+    public int getAbove(double threshold) {
+        int low = 0, high = frontierSize;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (getOwnUtility(middle) >= threshold)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        return low - 1;
+    }
+}
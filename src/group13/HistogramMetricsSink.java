@@ -0,0 +1,61 @@
+package group13;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Keeps a histogram per metric and writes a percentile summary when the negotiation ends.
+ * Durations are kept in nanoseconds; ratios and utilities are kept in millionths.
+ * The histograms are updated under the lock of the sink, since measures come from more than one thread.
+ */
+public class HistogramMetricsSink implements MetricsSink {
+    private static final double SCALE = 1e6;
+
+    private final String file;
+    private final Map<Metric, LatencyHistogram> histograms = new EnumMap<>(Metric.class);
+
+    public HistogramMetricsSink(String file) {
+        this.file = file;
+        for (Metric metric : Metric.values())
+            histograms.put(metric, new LatencyHistogram());
+    }
+
+    private static boolean isDuration(Metric metric) {
+        return metric.name().endsWith("_NANOS");
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return true;
+    }
+
+    @Override
+    public synchronized void record(Metric metric, double time, double value) {
+        histograms.get(metric).record(isDuration(metric) ? (long) value : (long) (value * SCALE));
+    }
+
+    @Override
+    public synchronized void close() {
+        try (PrintWriter out = new PrintWriter(new FileWriter(file))) {
+            out.println("metric;count;mean;p50;p90;p99;p99.9;max");
+            for (Map.Entry<Metric, LatencyHistogram> entry : histograms.entrySet()) {
+                LatencyHistogram histogram = entry.getValue();
+                if (histogram.getCount() == 0)
+                    continue;
+                double scale = isDuration(entry.getKey()) ? 1 : SCALE;
+                out.printf("%s;%d;%.3f;%.3f;%.3f;%.3f;%.3f;%.3f%n", entry.getKey(), histogram.getCount(),
+                        histogram.getMean() / scale,
+                        histogram.getValueAtPercentile(50) / scale,
+                        histogram.getValueAtPercentile(90) / scale,
+                        histogram.getValueAtPercentile(99) / scale,
+                        histogram.getValueAtPercentile(99.9) / scale,
+                        histogram.getMax() / scale);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
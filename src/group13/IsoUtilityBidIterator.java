@@ -0,0 +1,296 @@
+package group13;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Lazily enumerates the bids of an additive utility space whose utility is in [lower, upper],
+ * in descending order of utility, without materializing the outcome space.
+ * <p>
+ * The window is walked from the top in slices. Each slice is enumerated by a depth-first branch and bound
+ * over the issues, pruning every branch whose best or worst completion falls outside the slice, and is sorted
+ * in a buffer of fixed size before being returned. A slice with more bids than the buffer is halved and
+ * enumerated again, so memory stays bounded by the buffer whatever the size of the domain.
+ */
+public class IsoUtilityBidIterator implements Iterator<int[]> {
+    public static final int DEFAULT_BUFFER = 1024;
+    //slices narrower than this are returned in enumeration order instead of being halved again
+    private static final double MIN_WIDTH = 1e-9;
+    private static final double EPSILON = 1e-12;
+
+    private final int issues;
+    //weighted utility of each value, i.e. weight of the issue times the utility of the value
+    private final double[][] contribution;
+    //values of each issue sorted by decreasing contribution
+    private final int[][] valueOrder;
+    //best and worst utility that the issues from a depth onwards can add
+    private final double[] maxRest;
+    private final double[] minRest;
+
+    private final double lower;
+    private final int bufferSize;
+    private final int[] buffer;
+    private final double[] bufferUtilities;
+    private final int[] bufferOrder;
+    private int bufferCount;
+    private int bufferNext;
+
+    private double sliceHigh;
+    private boolean highInclusive = true;
+    private double width;
+    //cursor of a slice too dense to sort, returned in enumeration order
+    private Cursor stream;
+    private final int[] streamBid;
+    private boolean streamHasNext;
+    private double streamUtility;
+    private double lastUtility;
+
+    /**
+     * @param space  Additive utility space evaluated on encoded bids
+     * @param lower  Lowest utility returned
+     * @param upper  Highest utility returned
+     */
+    public IsoUtilityBidIterator(EncodedUtilitySpace space, double lower, double upper) {
+        this(space, lower, upper, DEFAULT_BUFFER);
+    }
+
+    /**
+     * @param space      Additive utility space evaluated on encoded bids
+     * @param lower      Lowest utility returned
+     * @param upper      Highest utility returned
+     * @param bufferSize Maximum number of bids held at once
+     */
+    public IsoUtilityBidIterator(EncodedUtilitySpace space, double lower, double upper, int bufferSize) {
+        BidEncoder encoder = space.getEncoder();
+        this.issues = encoder.getNumberOfIssues();
+        this.contribution = new double[issues][];
+        this.valueOrder = new int[issues][];
+        this.maxRest = new double[issues + 1];
+        this.minRest = new double[issues + 1];
+
+        for (int i = 0; i < issues; i++) {
+            int values = encoder.getNumberOfValues(i);
+            this.contribution[i] = new double[values];
+            for (int v = 0; v < values; v++)
+                this.contribution[i][v] = space.getWeight(i) * space.getValueUtility(i, v);
+            this.valueOrder[i] = sortDescending(this.contribution[i]);
+        }
+        for (int i = issues - 1; i >= 0; i--) {
+            int[] order = this.valueOrder[i];
+            this.maxRest[i] = this.maxRest[i + 1] + (order.length == 0 ? 0 : this.contribution[i][order[0]]);
+            this.minRest[i] = this.minRest[i + 1] + (order.length == 0 ? 0 : this.contribution[i][order[order.length - 1]]);
+        }
+
+        // the bounds are summed in another order than the bids, so they are loosened by EPSILON
+        this.lower = Math.max(lower, this.minRest[0] - EPSILON);
+        this.sliceHigh = Math.min(upper, this.maxRest[0] + EPSILON);
+        this.width = Math.max((this.sliceHigh - this.lower) / 16, MIN_WIDTH);
+        this.bufferSize = bufferSize;
+        this.buffer = new int[bufferSize * issues];
+        this.bufferUtilities = new double[bufferSize];
+        this.bufferOrder = new int[bufferSize];
+        this.streamBid = new int[issues];
+    }
+
+    /**
+     * @return Highest utility of the space
+     */
+    public double getMaxUtility() {
+        return maxRest[0];
+    }
+
+    /**
+     * @return Lowest utility of the space
+     */
+    public double getMinUtility() {
+        return minRest[0];
+    }
+
+    /**
+     * @return Utility of the last bid returned by {@link #next()}
+     */
+    public double getLastUtility() {
+        return lastUtility;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (bufferNext < bufferCount || streamHasNext)
+            return true;
+        return fill();
+    }
+
+    @Override
+    public int[] next() {
+        return next(new int[issues]);
+    }
+
+    /**
+     * Copies the next bid into an existing array, without allocating.
+     *
+     * @param out Array with one position per issue
+     * @return the given array
+     */
+    public int[] next(int[] out) {
+        if (!hasNext())
+            throw new NoSuchElementException();
+
+        if (bufferNext < bufferCount) {
+            int b = bufferOrder[bufferNext++];
+            System.arraycopy(buffer, b * issues, out, 0, issues);
+            lastUtility = bufferUtilities[b];
+        } else {
+            System.arraycopy(streamBid, 0, out, 0, issues);
+            lastUtility = streamUtility;
+            streamHasNext = stream.next(streamBid);
+            streamUtility = stream.utility;
+        }
+        return out;
+    }
+
+    /**
+     * Enumerates slices from the top of the window until one has bids.
+     *
+     * @return false when the window is exhausted
+     */
+    private boolean fill() {
+        bufferCount = 0;
+        bufferNext = 0;
+
+        while (sliceHigh >= lower && !(sliceHigh == lower && !highInclusive)) {
+            double sliceLow = Math.max(lower, sliceHigh - width);
+            Cursor cursor = new Cursor(sliceLow, sliceHigh, highInclusive);
+
+            int count = 0;
+            int[] bid = streamBid;
+            while (count <= bufferSize && cursor.next(bid)) {
+                if (count < bufferSize) {
+                    System.arraycopy(bid, 0, buffer, count * issues, issues);
+                    bufferUtilities[count] = cursor.utility;
+                }
+                count++;
+            }
+
+            if (count > bufferSize && width > MIN_WIDTH) {
+                width /= 2;
+                continue;
+            }
+
+            sliceHigh = sliceLow;
+            highInclusive = false;
+            if (sliceLow <= lower)
+                sliceHigh = Double.NEGATIVE_INFINITY;
+
+            if (count > bufferSize) {
+                // bids within MIN_WIDTH of each other: the buffer, then the rest of the slice as enumerated
+                bufferCount = bufferSize;
+                for (int b = 0; b < bufferCount; b++)
+                    bufferOrder[b] = b;
+                stream = cursor;
+                streamUtility = cursor.utility;
+                streamHasNext = true;
+                return true;
+            }
+
+            if (count < bufferSize / 4)
+                width *= 2;
+            if (count > 0) {
+                bufferCount = count;
+                sortBuffer();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Sorts the positions of the buffer by decreasing utility (shell sort, no allocation).
+     */
+    private void sortBuffer() {
+        for (int b = 0; b < bufferCount; b++)
+            bufferOrder[b] = b;
+        for (int gap = bufferCount / 2; gap > 0; gap /= 2) {
+            for (int i = gap; i < bufferCount; i++) {
+                int current = bufferOrder[i];
+                int j = i;
+                while (j >= gap && bufferUtilities[bufferOrder[j - gap]] < bufferUtilities[current]) {
+                    bufferOrder[j] = bufferOrder[j - gap];
+                    j -= gap;
+                }
+                bufferOrder[j] = current;
+            }
+        }
+    }
+
+    private static int[] sortDescending(double[] values) {
+        Integer[] order = new Integer[values.length];
+        for (int v = 0; v < values.length; v++)
+            order[v] = v;
+        Arrays.sort(order, (x, y) -> Double.compare(values[y], values[x]));
+
+        int[] result = new int[values.length];
+        for (int v = 0; v < values.length; v++)
+            result[v] = order[v];
+        return result;
+    }
+
+    /**
+     * Resumable depth-first branch and bound over the bids with utility in [low, high) (or [low, high]).
+     */
+    private final class Cursor {
+        private final double low;
+        private final double high;
+        private final boolean inclusive;
+        private final int[] position = new int[issues];
+        private final double[] prefix = new double[issues + 1];
+        private int depth;
+        private double utility;
+
+        Cursor(double low, double high, boolean inclusive) {
+            this.low = low;
+            this.high = high;
+            this.inclusive = inclusive;
+            this.depth = issues == 0 ? -1 : 0;
+            if (issues > 0)
+                this.position[0] = -1;
+        }
+
+        /**
+         * @param out Array with one position per issue, receives the next bid
+         * @return false when the slice is exhausted
+         */
+        boolean next(int[] out) {
+            while (depth >= 0) {
+                position[depth] += 1;
+                if (position[depth] >= valueOrder[depth].length) {
+                    depth--;
+                    continue;
+                }
+
+                double sum = prefix[depth] + contribution[depth][valueOrder[depth][position[depth]]];
+                // values are sorted, so every following value of this issue is also too low
+                if (sum + maxRest[depth + 1] < low - EPSILON) {
+                    depth--;
+                    continue;
+                }
+                if (sum + minRest[depth + 1] > high + EPSILON)
+                    continue;
+
+                prefix[depth + 1] = sum;
+                if (depth == issues - 1) {
+                    // the bounds above are loose by EPSILON, the slice itself is exact so slices never overlap
+                    if (sum < low || sum > high || (sum == high && !inclusive))
+                        continue;
+                    for (int i = 0; i < issues; i++)
+                        out[i] = valueOrder[i][position[i]];
+                    utility = sum;
+                    return true;
+                }
+                depth++;
+                position[depth] = -1;
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,375 @@
+package group13;
+
+import genius.core.Domain;
+import genius.core.DomainImpl;
+import genius.core.utility.AdditiveUtilitySpace;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+/**
+ * Statistics of Agent13 over the logs Genius leaves in log/ and logs/, per domain and per opponent.
+ * Files are read one at a time as streams (StAX for the session XML, a line reader for the CSV), and only
+ * the running totals are kept, so memory does not grow with the number of sessions.
+ * <p>
+ * Reads Log-Session_*.xml with the rounds of the CSV next to it, and the ';' separated reports of the
+ * XmlRunner and of {@link TournamentRunner}. Distances to the Pareto frontier and to the Nash solution are
+ * taken from the report when it has them, otherwise computed on the profiles of the session.
+ * <p>
+ * Usage: LogAnalyzer [file or directory]... (default: log logs)
+ */
+public class LogAnalyzer {
+    private static final String AGENT = "Agent13";
+
+    /**
+     * Running totals of a group of sessions.
+     */
+    public static class Stats {
+        public int sessions;
+        public int agreements;
+        public double utility;
+        public double welfare;
+        public double rounds;
+        public double paretoDistance;
+        public int paretoCount;
+        public double nashDistance;
+        public int nashCount;
+
+        void add(boolean agreement, double ownUtility, double socialWelfare, int round, double pareto, double nash) {
+            sessions++;
+            utility += ownUtility;
+            welfare += socialWelfare;
+            if (agreement) {
+                agreements++;
+                rounds += round;
+            }
+            if (!Double.isNaN(pareto)) {
+                paretoDistance += pareto;
+                paretoCount++;
+            }
+            if (!Double.isNaN(nash)) {
+                nashDistance += nash;
+                nashCount++;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%6d %9.1f%% %8.4f %8.4f %8.4f %8.4f %8.1f", sessions, 100.0 * agreements / sessions,
+                    utility / sessions, welfare / sessions,
+                    paretoCount == 0 ? Double.NaN : paretoDistance / paretoCount,
+                    nashCount == 0 ? Double.NaN : nashDistance / nashCount,
+                    agreements == 0 ? Double.NaN : rounds / agreements);
+        }
+    }
+
+    private static final class Frontier {
+        final ParetoFrontier pareto;
+        //position of the Nash solution on the frontier
+        final int nash;
+
+        Frontier(ParetoFrontier pareto, int nash) {
+            this.pareto = pareto;
+            this.nash = nash;
+        }
+    }
+
+    private final Map<String, Stats> byDomain = new TreeMap<>();
+    private final Map<String, Stats> byOpponent = new TreeMap<>();
+    private final Stats total = new Stats();
+    //profile file name (without .xml) to its path and to the path of its domain
+    private final Map<String, String> profiles = new HashMap<>();
+    private final Map<String, String> domainOfProfile;
+    //frontiers of the pairs of profiles already seen, null if they could not be read
+    private final Map<String, Frontier> frontiers = new HashMap<>();
+    private final XMLInputFactory xmlFactory = XMLInputFactory.newInstance();
+
+    /**
+     * @param domains Domain repository, used to find the domain of a profile
+     */
+    public LogAnalyzer(File domains) throws Exception {
+        this.domainOfProfile = TournamentSpec.readDomains(domains);
+        for (String profile : domainOfProfile.keySet())
+            profiles.put(baseName(profile), profile);
+    }
+
+    private static String baseName(String path) {
+        String name = new File(path).getName();
+        return name.endsWith(".xml") ? name.substring(0, name.length() - 4) : name;
+    }
+
+    /**
+     * Adds the sessions of a file, or of every log file in a directory.
+     */
+    public void add(File file) throws IOException {
+        if (file.isDirectory()) {
+            String[] names = file.list();
+            if (names == null)
+                return;
+            Arrays.sort(names);
+            for (String name : names)
+                add(new File(file, name));
+            return;
+        }
+
+        String name = file.getName();
+        try {
+            if (name.startsWith("Log-Session_") && name.endsWith(".xml"))
+                addSessionXml(file);
+            else if (name.endsWith(".csv") && !name.startsWith("Log-Session_"))
+                addReport(file);
+        } catch (XMLStreamException | RuntimeException e) {
+            System.err.println("Skipping " + file + ": " + e);
+        }
+    }
+
+    private void add(String domain, String opponent, boolean agreement, double utility, double welfare, int round,
+                     double pareto, double nash) {
+        byDomain.computeIfAbsent(domain, d -> new Stats()).add(agreement, utility, welfare, round, pareto, nash);
+        byOpponent.computeIfAbsent(opponent, o -> new Stats()).add(agreement, utility, welfare, round, pareto, nash);
+        total.add(agreement, utility, welfare, round, pareto, nash);
+    }
+
+    /**
+     * A session written by the Genius GUI: the outcome in the XML, the rounds in the CSV of the same name.
+     */
+    private void addSessionXml(File file) throws IOException, XMLStreamException {
+        String domain = null;
+        boolean agreement = false;
+        List<String[]> agents = new ArrayList<>(); // name, class, profile, utility
+
+        try (InputStream in = new FileInputStream(file)) {
+            XMLStreamReader reader = xmlFactory.createXMLStreamReader(in);
+            while (reader.hasNext()) {
+                if (reader.next() != XMLStreamConstants.START_ELEMENT)
+                    continue;
+                if (reader.getLocalName().equals("NegotiationOutcome")) {
+                    domain = reader.getAttributeValue(null, "domain");
+                    String outcome = reader.getAttributeValue(null, "finalOutcome");
+                    agreement = outcome != null && !outcome.equals("-");
+                } else if (reader.getLocalName().equals("resultsOfAgent")) {
+                    agents.add(new String[]{reader.getAttributeValue(null, "agent"),
+                            reader.getAttributeValue(null, "agentClass"),
+                            reader.getAttributeValue(null, "utilspace"),
+                            reader.getAttributeValue(null, "finalUtility")});
+                }
+            }
+            reader.close();
+        }
+
+        int own = -1;
+        for (int a = 0; a < agents.size(); a++) {
+            if (agents.get(a)[0].startsWith(AGENT) || agents.get(a)[1].endsWith(AGENT) || agents.get(a)[1].endsWith(AGENT + ".class"))
+                own = a;
+        }
+        if (own < 0 || domain == null)
+            return;
+
+        File csv = new File(file.getPath().substring(0, file.getPath().length() - 4) + ".csv");
+        int round = csv.exists() ? lastRound(csv) : 0;
+
+        double welfare = 0;
+        StringBuilder opponent = new StringBuilder();
+        for (int a = 0; a < agents.size(); a++) {
+            welfare += Double.parseDouble(agents.get(a)[3]);
+            if (a != own)
+                opponent.append(opponent.length() == 0 ? "" : "+").append(agentName(agents.get(a)[0]));
+        }
+        double utility = Double.parseDouble(agents.get(own)[3]);
+
+        double pareto = Double.NaN;
+        double nash = Double.NaN;
+        if (agents.size() == 2) {
+            int other = 1 - own;
+            double otherUtility = Double.parseDouble(agents.get(other)[3]);
+            pareto = paretoDistance(domain, agents.get(own)[2], agents.get(other)[2], utility, otherUtility);
+            nash = nashDistance(domain, agents.get(own)[2], agents.get(other)[2], utility, otherUtility);
+        }
+        add(domain, opponent.toString(), agreement, utility, welfare, round, pareto, nash);
+    }
+
+    /**
+     * @return Round of the last action of the session log
+     */
+    private static int lastRound(File csv) throws IOException {
+        int round = 0;
+        try (BufferedReader reader = new BufferedReader(new FileReader(csv))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int comma = line.indexOf(',');
+                if (comma > 0 && Character.isDigit(line.charAt(0)))
+                    round = Integer.parseInt(line.substring(0, comma));
+            }
+        }
+        return round;
+    }
+
+    /**
+     * A report with one session per row, with named columns (XmlRunner, TournamentRunner).
+     */
+    private void addReport(File file) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String line = reader.readLine();
+            if (line == null || !line.startsWith("sep="))
+                return;
+            String separator = line.substring("sep=".length());
+            String header = reader.readLine();
+            if (header == null)
+                return;
+
+            Map<String, Integer> columns = new HashMap<>();
+            String[] names = header.split(separator, -1);
+            for (int c = 0; c < names.length; c++)
+                columns.put(names[c], c);
+            if (!columns.containsKey("Agent 1") || !columns.containsKey("Utility 1"))
+                return;
+
+            while ((line = reader.readLine()) != null) {
+                String[] row = line.split(separator, -1);
+                if (row.length < names.length || !get(row, columns, "Exception").isEmpty())
+                    continue;
+                addReportRow(row, columns);
+            }
+        }
+    }
+
+    private static String get(String[] row, Map<String, Integer> columns, String column) {
+        Integer c = columns.get(column);
+        return c == null ? "" : row[c].trim();
+    }
+
+    private void addReportRow(String[] row, Map<String, Integer> columns) {
+        List<String> agents = new ArrayList<>();
+        for (int p = 1; columns.containsKey("Agent " + p); p++)
+            agents.add(get(row, columns, "Agent " + p));
+        int own = -1;
+        for (int p = 0; p < agents.size(); p++) {
+            if (agents.get(p).startsWith(AGENT))
+                own = p;
+        }
+        if (own < 0)
+            return;
+
+        double welfare = 0;
+        double[] utilities = new double[agents.size()];
+        StringBuilder opponent = new StringBuilder();
+        for (int p = 0; p < agents.size(); p++) {
+            utilities[p] = Double.parseDouble(get(row, columns, "Utility " + (p + 1)));
+            welfare += utilities[p];
+            if (p != own)
+                opponent.append(opponent.length() == 0 ? "" : "+").append(agentName(agents.get(p)));
+        }
+
+        String ownProfile = profiles.get(baseName(get(row, columns, "Profile " + (own + 1))));
+        String domain = ownProfile == null ? "unknown" : domainOfProfile.get(ownProfile);
+        boolean agreement = get(row, columns, "Agreement").equals("Yes");
+        String round = get(row, columns, "Round");
+
+        double pareto = parse(get(row, columns, "Dist. to Pareto"));
+        double nash = parse(get(row, columns, "Dist. to Nash"));
+        if (agents.size() == 2 && ownProfile != null && (Double.isNaN(pareto) || Double.isNaN(nash))) {
+            int other = 1 - own;
+            String otherProfile = profiles.get(baseName(get(row, columns, "Profile " + (other + 1))));
+            if (otherProfile != null) {
+                if (Double.isNaN(pareto))
+                    pareto = paretoDistance(domain, ownProfile, otherProfile, utilities[own], utilities[other]);
+                if (Double.isNaN(nash))
+                    nash = nashDistance(domain, ownProfile, otherProfile, utilities[own], utilities[other]);
+            }
+        }
+        add(domain, opponent.toString(), agreement, utilities[own], welfare, round.isEmpty() ? 0 : Integer.parseInt(round), pareto, nash);
+    }
+
+    private static double parse(String value) {
+        return value.isEmpty() ? Double.NaN : Double.parseDouble(value);
+    }
+
+    /**
+     * Agent@0 and Agent are the same agent in every session.
+     */
+    private static String agentName(String agent) {
+        int at = agent.indexOf('@');
+        return at < 0 ? agent : agent.substring(0, at);
+    }
+
+    /**
+     * @return Frontier of the two profiles, or null if they cannot be read
+     */
+    private Frontier getFrontier(String domainFile, String ownProfile, String otherProfile) {
+        String key = domainFile + "|" + ownProfile + "|" + otherProfile;
+        if (frontiers.containsKey(key))
+            return frontiers.get(key);
+
+        Frontier frontier = null;
+        try {
+            Domain domain = new DomainImpl(domainFile);
+            BidEncoder encoder = new BidEncoder(domain);
+            AdditiveUtilitySpace own = new AdditiveUtilitySpace(domain, ownProfile);
+            AdditiveUtilitySpace other = new AdditiveUtilitySpace(domain, otherProfile);
+            ParetoFrontier pareto = new ParetoFrontier(new EncodedUtilitySpace(encoder, own),
+                    new EncodedUtilitySpace(encoder, other), new Random(13));
+            frontier = new Frontier(pareto, pareto.getNash(own.getReservationValue(), other.getReservationValue()));
+        } catch (Exception e) {
+            System.err.println("Cannot build the frontier of " + ownProfile + " and " + otherProfile + ": " + e);
+        }
+        frontiers.put(key, frontier);
+        return frontier;
+    }
+
+    private double paretoDistance(String domain, String ownProfile, String otherProfile, double own, double other) {
+        Frontier frontier = getFrontier(domain, ownProfile, otherProfile);
+        return frontier == null ? Double.NaN : frontier.pareto.getDistance(own, other);
+    }
+
+    private double nashDistance(String domain, String ownProfile, String otherProfile, double own, double other) {
+        Frontier frontier = getFrontier(domain, ownProfile, otherProfile);
+        if (frontier == null)
+            return Double.NaN;
+        return Math.hypot(frontier.pareto.getFirstUtility(frontier.nash) - own,
+                frontier.pareto.getSecondUtility(frontier.nash) - other);
+    }
+
+    public Map<String, Stats> getByDomain() {
+        return byDomain;
+    }
+
+    public Map<String, Stats> getByOpponent() {
+        return byOpponent;
+    }
+
+    public Stats getTotal() {
+        return total;
+    }
+
+    private static void print(String title, Map<String, Stats> groups) {
+        System.out.printf("%n%-60s %6s %10s %8s %8s %8s %8s %8s%n", title, "n", "agreement", "utility", "welfare",
+                "pareto", "nash", "rounds");
+        for (Map.Entry<String, Stats> entry : groups.entrySet())
+            System.out.printf("%-60s %s%n", entry.getKey(), entry.getValue());
+    }
+
+    public static void main(String[] args) throws Exception {
+        LogAnalyzer analyzer = new LogAnalyzer(new File("domainrepository.xml"));
+        for (String path : args.length == 0 ? new String[]{"log", "logs"} : args)
+            analyzer.add(new File(path));
+
+        print("Domain", analyzer.getByDomain());
+        print("Opponent", analyzer.getByOpponent());
+        System.out.printf("%n%-60s %s%n", "All sessions of " + AGENT, analyzer.getTotal());
+    }
+}
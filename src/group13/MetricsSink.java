@@ -0,0 +1,107 @@
+package group13;
+
+import java.io.IOException;
+
+/**
+ * Receives the measurements of Agent13. Agents only measure when the sink is enabled,
+ * so the default sink costs one boolean check per turn.
+ * Measures come from the negotiation thread and from the offer computed in the background at the same time,
+ * so sinks must be thread-safe.
+ * <p>
+ * The sink is chosen with the system property group13.metrics: off (default), summary, trace or summary,trace.
+ * Files are written to the directory in group13.metrics.dir (log by default).
+ */
+public interface MetricsSink {
+    enum Metric {
+        CHOOSE_ACTION_NANOS,
+        RECEIVE_MESSAGE_NANOS,
+        OPPONENT_UPDATE_NANOS,
+        GENERATE_BIDS_NANOS,
+        //bids generateBids returned, and hit rate of the utility cache while picking them
+        CANDIDATES,
+        UTILITY_CACHE_HIT_RATE,
+        UTILITY_THRESHOLD,
+        CONCESSION_RATE,
+        HARD_HEADED,
+        //1 when the offer computed in the background was used, 0 when it had to be computed again
+        SPECULATION_HIT,
+        //nanoseconds the offer of the turn could take
+        TURN_BUDGET_NANOS
+    }
+
+    MetricsSink NONE = new MetricsSink() {
+        @Override
+        public boolean isEnabled() {
+            return false;
+        }
+
+        @Override
+        public void record(Metric metric, double time, double value) {
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+
+    boolean isEnabled();
+
+    /**
+     * @param metric Measured quantity
+     * @param time   Normalized negotiation time of the measure
+     * @param value  Measure
+     */
+    void record(Metric metric, double time, double value);
+
+    /**
+     * Writes whatever is still buffered; called when the negotiation ends.
+     */
+    void close();
+
+    /**
+     * @param session Name of the session, used in the file names
+     * @return Sink configured by the system properties
+     */
+    static MetricsSink fromProperties(String session) {
+        String mode = System.getProperty("group13.metrics", "off");
+        String directory = System.getProperty("group13.metrics.dir", "log");
+        String prefix = directory + "/Agent13-" + session;
+
+        MetricsSink summary = null;
+        MetricsSink trace = null;
+        try {
+            if (mode.contains("summary"))
+                summary = new HistogramMetricsSink(prefix + "-summary.txt");
+            if (mode.contains("trace"))
+                trace = new CsvTraceMetricsSink(prefix + "-trace.csv");
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+
+        if (summary == null)
+            return trace == null ? NONE : trace;
+        if (trace == null)
+            return summary;
+
+        MetricsSink first = summary;
+        MetricsSink second = trace;
+        return new MetricsSink() {
+            @Override
+            public boolean isEnabled() {
+                return true;
+            }
+
+            @Override
+            public void record(Metric metric, double time, double value) {
+                first.record(metric, time, value);
+                second.record(metric, time, value);
+            }
+
+            @Override
+            public void close() {
+                first.close();
+                second.close();
+            }
+        };
+    }
+}
@@ -0,0 +1,126 @@
+package group13;
+
+import genius.core.Bid;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Computes our next offer on a single background worker while the opponents think, so chooseAction only has to
+ * check it. The computation is started when our turn ends, and runs while the opponents decide on their actions.
+ * <p>
+ * The computation reads the state of the agent (models, caches, generator), so while it is {@link #isBusy() busy}
+ * the agent keeps what it learns aside, and calls {@link #await()} before touching that state itself: at most one
+ * computation is in flight, and the agent and the worker never change the same state at the same time. Only the
+ * offer of the last turn is kept, so the memory used does not grow with the negotiation.
+ * <p>
+ * The pipeline is on unless the system property group13.pipeline is off.
+ */
+public class OfferPipeline {
+    private final ExecutorService worker;
+    private Future<Bid> pending;
+    private int pendingTurn = -1;
+    private Bid offer;
+    private int offerTurn = -1;
+
+    /**
+     * @param name Name of the worker thread
+     */
+    public OfferPipeline(String name) {
+        this.worker = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * @param name Name of the worker thread
+     * @return New pipeline, null if it is turned off by the group13.pipeline system property
+     */
+    public static OfferPipeline fromProperties(String name) {
+        if (System.getProperty("group13.pipeline", "on").equals("off"))
+            return null;
+        return new OfferPipeline(name);
+    }
+
+    /**
+     * Starts computing the offer of a turn, dropping the one of an earlier turn.
+     * The computation in flight, if any, must have been awaited or cancelled.
+     *
+     * @param turn        Number of the turn the offer is for
+     * @param computation Computation of the offer
+     */
+    public void submit(int turn, Callable<Bid> computation) {
+        this.offer = null;
+        this.offerTurn = -1;
+        this.pending = this.worker.submit(computation);
+        this.pendingTurn = turn;
+    }
+
+    /**
+     * @return true while a computation is in flight, so the state it reads must not change
+     */
+    public boolean isBusy() {
+        return this.pending != null && !this.pending.isDone();
+    }
+
+    /**
+     * Waits for the computation in flight, if any, so the caller can use the state it reads.
+     * One that fails leaves no offer.
+     */
+    public void await() {
+        finish(false);
+    }
+
+    /**
+     * Drops the computation in flight, if any, so the caller can change the state it reads.
+     * One that has not started is cancelled, one that has is waited for since it cannot be stopped safely.
+     */
+    public void cancel() {
+        finish(true);
+        this.offer = null;
+        this.offerTurn = -1;
+    }
+
+    private void finish(boolean cancel) {
+        if (this.pending == null)
+            return;
+        try {
+            if (!cancel || !this.pending.cancel(false)) {
+                this.offer = this.pending.get();
+                this.offerTurn = this.pendingTurn;
+            }
+        } catch (CancellationException | ExecutionException e) {
+            this.offer = null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            this.offer = null;
+        }
+        this.pending = null;
+    }
+
+    /**
+     * @param turn Number of the current turn
+     * @return Offer computed for the turn, null if there is none; it is only returned once
+     */
+    public Bid take(int turn) {
+        await();
+        Bid result = this.offerTurn == turn ? this.offer : null;
+        this.offer = null;
+        this.offerTurn = -1;
+        return result;
+    }
+
+    /**
+     * Drops the computation in flight and stops the worker.
+     */
+    public void close() {
+        cancel();
+        this.worker.shutdown();
+    }
+}
@@ -0,0 +1,324 @@
+package group13;
+
+import genius.core.AgentID;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Opponent models of every other party of a negotiation, one per sender.
+ * The state of each opponent lives in arrays indexed by the ordinal of the sender (order of its first offer).
+ * The predicted utility of each opponent is flattened into one table of contributions per issue value,
+ * and the sum over all opponents into another; tables are rebuilt lazily, after the model changed.
+ */
+public class OpponentModelManager {
+    private final BidEncoder encoder;
+    //offset of the values of each issue in the contribution tables
+    private final int[] offsets;
+    private final int totalValues;
+
+    private final Map<AgentID, Integer> ordinals = new HashMap<>();
+    private AgentID[] senders = new AgentID[2];
+    private OpponentModel[] models = new OpponentModel[2];
+    //contributions[o][offsets[i] + v] is the part of the utility of opponent o from value v of issue i
+    private double[][] contributions = new double[2][];
+    private boolean[] dirty = new boolean[2];
+    //best and worst utility for us of the offers of each opponent
+    private double[] bestReceived = new double[2];
+    private double[] worstReceived = new double[2];
+    //concession of each opponent: their predicted utility and our utility of their offers over time
+    private ConcessionEstimator[] theirTrends = new ConcessionEstimator[2];
+    private ConcessionEstimator[] ownTrends = new ConcessionEstimator[2];
+    //whether each opponent started from the profile of its class
+    private boolean[] warm = new boolean[2];
+    //slope of our utility of the offers of each opponent in earlier sessions, NaN if it is new
+    private double[] priorSlopes = new double[2];
+    //offers of each opponent in this negotiation that used each value, indexed like the contribution tables
+    private int[][] counts = new int[2][];
+    private int[] offers = new int[2];
+    private OpponentProfileStore profiles;
+    private int count;
+
+    private final double[] sumContributions;
+    private boolean sumDirty;
+    private int numberOfBids;
+    private int lastSender = -1;
+
+    /**
+     * @param encoder Index of the domain
+     */
+    public OpponentModelManager(BidEncoder encoder) {
+        this.encoder = encoder;
+        int issues = encoder.getNumberOfIssues();
+        this.offsets = new int[issues];
+        int total = 0;
+        for (int i = 0; i < issues; i++) {
+            this.offsets[i] = total;
+            total += encoder.getNumberOfValues(i);
+        }
+        this.totalValues = total;
+        this.sumContributions = new double[total];
+    }
+
+    /**
+     * @param sender Party
+     * @return Ordinal of the party, registering it if it is new
+     */
+    public int getOrdinal(AgentID sender) {
+        Integer ordinal = ordinals.get(sender);
+        if (ordinal != null)
+            return ordinal;
+
+        if (count == models.length) {
+            int capacity = count * 2;
+            senders = Arrays.copyOf(senders, capacity);
+            models = Arrays.copyOf(models, capacity);
+            contributions = Arrays.copyOf(contributions, capacity);
+            dirty = Arrays.copyOf(dirty, capacity);
+            bestReceived = Arrays.copyOf(bestReceived, capacity);
+            worstReceived = Arrays.copyOf(worstReceived, capacity);
+            theirTrends = Arrays.copyOf(theirTrends, capacity);
+            ownTrends = Arrays.copyOf(ownTrends, capacity);
+            warm = Arrays.copyOf(warm, capacity);
+            priorSlopes = Arrays.copyOf(priorSlopes, capacity);
+            counts = Arrays.copyOf(counts, capacity);
+            offers = Arrays.copyOf(offers, capacity);
+        }
+        senders[count] = sender;
+        models[count] = OpponentModel.fromProperties(encoder);
+        contributions[count] = new double[totalValues];
+        dirty[count] = true;
+        bestReceived[count] = 0;
+        worstReceived[count] = 1;
+        theirTrends[count] = new ConcessionEstimator();
+        ownTrends[count] = new ConcessionEstimator();
+        warm[count] = false;
+        priorSlopes[count] = Double.NaN;
+        counts[count] = new int[totalValues];
+        offers[count] = 0;
+        OpponentProfileStore.Profile profile = profiles == null ? null
+                : profiles.get(OpponentProfileStore.getOpponentClass(sender.getName()));
+        if (profile != null) {
+            models[count].addPrior(profile.getPrior(encoder));
+            warm[count] = true;
+            priorSlopes[count] = profile.slope;
+        }
+        ordinals.put(sender, count);
+        sumDirty = true;
+        return count++;
+    }
+
+    /**
+     * Warm-starts the models of the opponents registered from now on with the profiles of their class.
+     *
+     * @param profiles Profiles of the domain, may be null
+     */
+    public void setProfiles(OpponentProfileStore profiles) {
+        this.profiles = profiles;
+    }
+
+    /**
+     * @return true if there are opponents and all of them started from a profile
+     */
+    public boolean hasPriors() {
+        for (int o = 0; o < count; o++)
+            if (!warm[o])
+                return false;
+        return count > 0;
+    }
+
+    /**
+     * Merges what was learned about every opponent in this negotiation into the profiles of their class.
+     */
+    public void saveProfiles() {
+        if (profiles == null)
+            return;
+        for (int o = 0; o < count; o++)
+            profiles.merge(OpponentProfileStore.getOpponentClass(senders[o].getName()), counts[o], offers[o],
+                    ownTrends[o].getSlope());
+    }
+
+    /**
+     * Updates the model of a sender with its offer.
+     *
+     * @param sender     Party that made the offer
+     * @param time       Normalized time of the offer
+     * @param encoded    Index of the value of each issue of the offer
+     * @param ownUtility Utility of the offer for us
+     * @return Predicted utility of the offer for the sender, in its updated model
+     */
+    public double update(AgentID sender, double time, int[] encoded, double ownUtility) {
+        int ordinal = getOrdinal(sender);
+        lastSender = ordinal;
+        numberOfBids++;
+
+        if (ownUtility > bestReceived[ordinal]) bestReceived[ordinal] = ownUtility;
+        if (ownUtility < worstReceived[ordinal]) worstReceived[ordinal] = ownUtility;
+
+        dirty[ordinal] = true;
+        sumDirty = true;
+        offers[ordinal]++;
+        for (int i = 0; i < offsets.length; i++)
+            counts[ordinal][offsets[i] + encoded[i]]++;
+        double theirUtility = models[ordinal].update(encoded, time);
+        theirTrends[ordinal].add(time, theirUtility);
+        ownTrends[ordinal].add(time, ownUtility);
+        return theirUtility;
+    }
+
+    /**
+     * Rebuilds the contribution tables that changed since the last call.
+     * Must be called before reading the views from several threads.
+     */
+    public void refresh() {
+        if (!sumDirty)
+            return;
+
+        Arrays.fill(sumContributions, 0);
+        for (int o = 0; o < count; o++) {
+            if (dirty[o]) {
+                for (int i = 0; i < offsets.length; i++) {
+                    for (int v = 0; v < encoder.getNumberOfValues(i); v++)
+                        contributions[o][offsets[i] + v] = models[o].getContribution(i, v);
+                }
+                dirty[o] = false;
+            }
+            for (int k = 0; k < totalValues; k++)
+                sumContributions[k] += contributions[o][k];
+        }
+        sumDirty = false;
+    }
+
+    private static double getValue(double[] table, int[] offsets, int[] encoded) {
+        double utility = 0;
+        for (int i = 0; i < offsets.length; i++)
+            utility += table[offsets[i] + encoded[i]];
+        return utility;
+    }
+
+    /**
+     * @param ordinal Opponent
+     * @param encoded Index of the value of each issue of the bid
+     * @return Predicted utility of the bid for the opponent
+     */
+    public double getValue(int ordinal, int[] encoded) {
+        refresh();
+        return getValue(contributions[ordinal], offsets, encoded);
+    }
+
+    /**
+     * @param encoded Index of the value of each issue of the bid
+     * @return Sum of the predicted utility of the bid for every opponent
+     */
+    public double getSum(int[] encoded) {
+        refresh();
+        return getValue(sumContributions, offsets, encoded);
+    }
+
+    /**
+     * @param encoded Index of the value of each issue of the bid
+     * @return Lowest predicted utility of the bid among the opponents, 0 if there are none
+     */
+    public double getMin(int[] encoded) {
+        refresh();
+        double min = count == 0 ? 0 : Double.POSITIVE_INFINITY;
+        for (int o = 0; o < count; o++)
+            min = Math.min(min, getValue(contributions[o], offsets, encoded));
+        return min;
+    }
+
+    /**
+     * @param issue Issue
+     * @param value Value of the issue
+     * @return Sum over every opponent of the part of its predicted utility from that value
+     */
+    public double getSumContribution(int issue, int value) {
+        refresh();
+        return sumContributions[offsets[issue] + value];
+    }
+
+    /**
+     * @param encoded          Index of the value of each issue of the bid
+     * @param reservationValue Reservation value subtracted from each utility
+     * @return Product of the predicted utility of the bid for every opponent, over the reservation value; each
+     * factor is at least 0, so two opponents below it do not make a positive product
+     */
+    public double getProduct(int[] encoded, double reservationValue) {
+        refresh();
+        double product = 1;
+        for (int o = 0; o < count; o++)
+            product *= Math.max(0, getValue(contributions[o], offsets, encoded) - reservationValue);
+        return product;
+    }
+
+    /**
+     * @return Number of opponents that made an offer
+     */
+    public int size() {
+        return count;
+    }
+
+    public AgentID getSender(int ordinal) {
+        return senders[ordinal];
+    }
+
+    /**
+     * @return Ordinal of the opponent that made the last offer, or -1 if there was none
+     */
+    public int getLastSender() {
+        return lastSender;
+    }
+
+    /**
+     * @return Number of offers received from all opponents
+     */
+    public int getNumberOfBids() {
+        return numberOfBids;
+    }
+
+    /**
+     * @param ordinal Opponent
+     * @return Predicted utility for the opponent of its own offers over time, as predicted when each was received
+     */
+    public ConcessionEstimator getTheirTrend(int ordinal) {
+        return theirTrends[ordinal];
+    }
+
+    /**
+     * @param ordinal Opponent
+     * @return Our utility of the offers of the opponent over time
+     */
+    public ConcessionEstimator getOwnTrend(int ordinal) {
+        return ownTrends[ordinal];
+    }
+
+    /**
+     * An opponent known from earlier sessions counts with the slope of its profile until it made a window of offers.
+     *
+     * @return Lowest change per unit of time of our utility of the offers of any opponent, 0 if there are none
+     */
+    public double getMinOwnSlope() {
+        if (count == 0)
+            return 0;
+        double slope = Double.POSITIVE_INFINITY;
+        for (int o = 0; o < count; o++) {
+            boolean measured = ownTrends[o].size() >= ConcessionEstimator.DEFAULT_WINDOW || Double.isNaN(priorSlopes[o]);
+            slope = Math.min(slope, measured ? ownTrends[o].getSlope() : priorSlopes[o]);
+        }
+        return slope;
+    }
+
+    /**
+     * @return Smallest difference between the best and the worst offer for us of any opponent,
+     * -1 (like an opponent that made no offer) if there are none
+     */
+    public double getMinReceivedRange() {
+        if (count == 0)
+            return -1;
+        double range = Double.POSITIVE_INFINITY;
+        for (int o = 0; o < count; o++)
+            range = Math.min(range, bestReceived[o] - worstReceived[o]);
+        return range;
+    }
+}
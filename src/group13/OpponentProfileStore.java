@@ -0,0 +1,228 @@
+package group13;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * What was learned about each opponent class on a domain in earlier negotiations, kept in one memory-mapped file
+ * per domain and opponent class, in the directory named by the group13.profiles system property.
+ * <p>
+ * A profile holds the number of offers of the opponent, the frequency of every value in them and the slope of the
+ * utility of its offers for us, each a moving average over the sessions where the earlier ones keep {@link #DECAY}
+ * of their weight. The frequencies warm-start the opponent model, the slope stands for the concession of the
+ * opponent until the session has enough offers to measure it. Profiles of the domain are read when the
+ * store is opened, and one is merged with the counts of the session when it ends. Reads take a shared lock on the
+ * file and merges an exclusive one, so agents in other processes can use the same directory; agents of the same
+ * process also synchronize on the path, since file locks are held per process.
+ */
+public class OpponentProfileStore {
+    static final int MAGIC = 0x47313350; // "G13P"
+    static final int VERSION = 2;
+    //weight kept by the earlier sessions when a new one is merged
+    public static final double DECAY = 0.7;
+    //offers the prior of a new session counts as, at most, so the opponent of the day dominates quickly
+    public static final int PRIOR_BIDS = 20;
+    private static final int HEADER_BYTES = 4 * 4 + 8 * 2;
+
+    private static final Map<String, Object> LOCKS = new ConcurrentHashMap<>();
+
+    /**
+     * Opponent class as learned in earlier sessions.
+     */
+    public static class Profile {
+        //number of offers in a session, and of the offers using each value, indexed like the contribution tables
+        public final double bids;
+        public final double[] frequencies;
+        //change of the utility for us of the offers per unit of time
+        public final double slope;
+
+        Profile(double bids, double[] frequencies, double slope) {
+            this.bids = bids;
+            this.frequencies = frequencies;
+            this.slope = slope;
+        }
+
+        /**
+         * @param encoder Index of the domain
+         * @return Counts of each value, scaled to at most {@link #PRIOR_BIDS} offers
+         */
+        public int[][] getPrior(BidEncoder encoder) {
+            double scale = bids > PRIOR_BIDS ? PRIOR_BIDS / bids : 1;
+            int[][] prior = new int[encoder.getNumberOfIssues()][];
+            int k = 0;
+            for (int i = 0; i < prior.length; i++) {
+                prior[i] = new int[encoder.getNumberOfValues(i)];
+                for (int v = 0; v < prior[i].length; v++)
+                    prior[i][v] = (int) Math.round(frequencies[k++] * scale);
+            }
+            return prior;
+        }
+    }
+
+    private final File directory;
+    private final String domain;
+    private final int issues;
+    private final int totalValues;
+    private final Map<String, Profile> profiles = new HashMap<>();
+
+    /**
+     * Opens the store and reads the profiles of the domain.
+     *
+     * @param directory Directory of the profile files, created if needed
+     * @param domain    Name of the domain
+     * @param encoder   Index of the domain
+     */
+    public OpponentProfileStore(File directory, String domain, BidEncoder encoder) throws IOException {
+        this.directory = directory;
+        this.domain = toFileName(domain);
+        this.issues = encoder.getNumberOfIssues();
+        int total = 0;
+        for (int i = 0; i < issues; i++)
+            total += encoder.getNumberOfValues(i);
+        this.totalValues = total;
+
+        if (!directory.isDirectory() && !directory.mkdirs())
+            throw new IOException("Cannot create " + directory);
+        File[] files = directory.listFiles((dir, name) -> name.startsWith(this.domain + "-") && name.endsWith(".bin"));
+        if (files == null)
+            return;
+        for (File file : files) {
+            String name = file.getName();
+            Profile profile = read(file);
+            if (profile != null)
+                profiles.put(name.substring(this.domain.length() + 1, name.length() - ".bin".length()), profile);
+        }
+    }
+
+    /**
+     * @param domain  Name of the domain
+     * @param encoder Index of the domain
+     * @return Store in the directory named by the group13.profiles system property, null if it is not set
+     */
+    public static OpponentProfileStore fromProperties(String domain, BidEncoder encoder) {
+        String directory = System.getProperty("group13.profiles");
+        if (directory == null)
+            return null;
+        try {
+            return new OpponentProfileStore(new File(directory), domain, encoder);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * @param name Name of a party, like Agent13@2
+     * @return Class of the party the profiles are kept for
+     */
+    public static String getOpponentClass(String name) {
+        int at = name.indexOf('@');
+        return toFileName(at >= 0 ? name.substring(0, at) : name.replaceAll("[\\s\\d]+$", ""));
+    }
+
+    private static String toFileName(String name) {
+        return name.replaceAll("[^A-Za-z0-9._]", "_");
+    }
+
+    /**
+     * @param opponent Class of the opponent
+     * @return Profile read when the store was opened, null if the opponent is new on this domain
+     */
+    public Profile get(String opponent) {
+        return profiles.get(opponent);
+    }
+
+    private static Object lockOf(File file) {
+        return LOCKS.computeIfAbsent(file.getAbsolutePath(), path -> new Object());
+    }
+
+    private int getFileSize() {
+        return HEADER_BYTES + 8 * totalValues;
+    }
+
+    private Profile read(File file) {
+        synchronized (lockOf(file)) {
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                if (channel.size() != getFileSize())
+                    return null;
+                FileLock lock = channel.lock(0, Long.MAX_VALUE, true);
+                try {
+                    MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, getFileSize());
+                    return read(buffer);
+                } finally {
+                    lock.release();
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+                return null;
+            }
+        }
+    }
+
+    /**
+     * @return Profile in the buffer, null if it is empty or written for another encoding of the domain
+     */
+    private Profile read(MappedByteBuffer buffer) {
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION || buffer.getInt(8) != issues
+                || buffer.getInt(12) != totalValues)
+            return null;
+        double bids = buffer.getDouble(16);
+        double slope = buffer.getDouble(24);
+        double[] frequencies = new double[totalValues];
+        for (int k = 0; k < totalValues; k++)
+            frequencies[k] = buffer.getDouble(HEADER_BYTES + 8 * k);
+        return new Profile(bids, frequencies, slope);
+    }
+
+    /**
+     * Merges what was learned in a session into the profile of the opponent, on top of what other agents wrote
+     * since the store was opened.
+     *
+     * @param opponent Class of the opponent
+     * @param counts   Number of offers of the session using each value, indexed like the contribution tables
+     * @param bids     Number of offers of the session
+     * @param slope    Change of the utility for us of the offers per unit of time
+     */
+    public void merge(String opponent, int[] counts, int bids, double slope) {
+        if (bids == 0)
+            return;
+        File file = new File(directory, domain + "-" + opponent + ".bin");
+        synchronized (lockOf(file)) {
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                FileLock lock = channel.lock();
+                try {
+                    if (channel.size() > getFileSize())
+                        channel.truncate(getFileSize());
+                    MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, getFileSize());
+                    Profile stored = read(buffer);
+                    // the same moving average for every field: the first session counts fully
+                    double keep = stored == null ? 0 : DECAY;
+                    double weight = 1 - keep;
+
+                    buffer.putInt(0, MAGIC);
+                    buffer.putInt(4, VERSION);
+                    buffer.putInt(8, issues);
+                    buffer.putInt(12, totalValues);
+                    buffer.putDouble(16, (stored == null ? 0 : keep * stored.bids) + weight * bids);
+                    buffer.putDouble(24, (stored == null ? 0 : keep * stored.slope) + weight * slope);
+                    for (int k = 0; k < totalValues; k++)
+                        buffer.putDouble(HEADER_BYTES + 8 * k,
+                                (stored == null ? 0 : keep * stored.frequencies[k]) + weight * counts[k]);
+                    buffer.force();
+                } finally {
+                    lock.release();
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package group13;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Pareto optimal bids of a bilateral negotiation, for two utility functions on the same encoding.
+ * Small domains are fully enumerated, bigger ones are sampled like in {@link BidIndex}.
+ * The frontier is kept sorted by the first utility, descending (so the second one ascends).
+ */
+public class ParetoFrontier {
+    private final BidEncoder encoder;
+    private final int issues;
+    //encoded frontier bids, one after the other
+    private final int[] bids;
+    private final double[] first;
+    private final double[] second;
+
+    /**
+     * @param first  Utility of the first party
+     * @param second Utility of the second party
+     * @param random Generator used to sample bigger domains
+     */
+    public ParetoFrontier(EncodedUtilitySpace first, EncodedUtilitySpace second, Random random) {
+        this.encoder = first.getEncoder();
+        this.issues = encoder.getNumberOfIssues();
+
+        long total = encoder.getNumberOfBids();
+        boolean enumerate = total <= BidIndex.MAX_ENUMERATED;
+        int size = enumerate ? (int) total : BidIndex.SAMPLE_SIZE;
+
+        int[] candidates = new int[size * issues];
+        double[] firstUtilities = new double[size];
+        double[] secondUtilities = new double[size];
+        int[] current = new int[issues];
+        for (int b = 0; b < size; b++) {
+            if (enumerate) {
+                encoder.unpack(b, current);
+            } else {
+                for (int i = 0; i < issues; i++)
+                    current[i] = random.nextInt(encoder.getNumberOfValues(i));
+            }
+            System.arraycopy(current, 0, candidates, b * issues, issues);
+            firstUtilities[b] = first.getUtility(current);
+            secondUtilities[b] = second.getUtility(current);
+        }
+
+        Integer[] order = new Integer[size];
+        for (int b = 0; b < size; b++)
+            order[b] = b;
+        // best for the first party first; on ties the best for the second party dominates the others
+        Arrays.sort(order, (x, y) -> firstUtilities[x] != firstUtilities[y]
+                ? Double.compare(firstUtilities[y], firstUtilities[x])
+                : Double.compare(secondUtilities[y], secondUtilities[x]));
+
+        int count = 0;
+        int[] frontier = new int[size];
+        double bestSecond = Double.NEGATIVE_INFINITY;
+        for (int b : order) {
+            if (secondUtilities[b] > bestSecond) {
+                frontier[count++] = b;
+                bestSecond = secondUtilities[b];
+            }
+        }
+
+        this.bids = new int[count * issues];
+        this.first = new double[count];
+        this.second = new double[count];
+        for (int p = 0; p < count; p++) {
+            System.arraycopy(candidates, frontier[p] * issues, this.bids, p * issues, issues);
+            this.first[p] = firstUtilities[frontier[p]];
+            this.second[p] = secondUtilities[frontier[p]];
+        }
+    }
+
+    public int size() {
+        return first.length;
+    }
+
+    public double getFirstUtility(int point) {
+        return first[point];
+    }
+
+    public double getSecondUtility(int point) {
+        return second[point];
+    }
+
+    /**
+     * @param point Position on the frontier
+     * @param out   Array with one position per issue
+     * @return the given array
+     */
+    public int[] getBid(int point, int[] out) {
+        System.arraycopy(bids, point * issues, out, 0, issues);
+        return out;
+    }
+
+    /**
+     * @param firstReservation  Reservation value of the first party
+     * @param secondReservation Reservation value of the second party
+     * @return Position of the Nash solution (highest product of the utilities over the reservation values)
+     */
+    public int getNash(double firstReservation, double secondReservation) {
+        int nash = 0;
+        double best = Double.NEGATIVE_INFINITY;
+        for (int p = 0; p < first.length; p++) {
+            double product = (first[p] - firstReservation) * (second[p] - secondReservation);
+            if (first[p] >= firstReservation && second[p] >= secondReservation && product > best) {
+                best = product;
+                nash = p;
+            }
+        }
+        return nash;
+    }
+
+    /**
+     * @param firstUtility  Utility of an outcome for the first party
+     * @param secondUtility Utility of the outcome for the second party
+     * @return Euclidean distance from the outcome to the closest point of the frontier
+     */
+    public double getDistance(double firstUtility, double secondUtility) {
+        double best = Double.POSITIVE_INFINITY;
+        for (int p = 0; p < first.length; p++)
+            best = Math.min(best, Math.hypot(first[p] - firstUtility, second[p] - secondUtility));
+        return best;
+    }
+}
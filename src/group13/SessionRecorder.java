@@ -0,0 +1,167 @@
+package group13;
+
+import genius.core.AgentID;
+import genius.core.Bid;
+import genius.core.actions.Accept;
+import genius.core.actions.Action;
+import genius.core.actions.EndNegotiation;
+import genius.core.actions.Offer;
+import genius.core.timeline.TimeLineInfo;
+import genius.core.uncertainty.BidRanking;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Writes what an agent saw during a session to a compact binary log, so {@link SessionReplay} can drive
+ * a new agent through exactly the same session. While recording, the agent does not let the clock decide anything
+ * (the estimate is computed at once, and every turn does the same work), so the log and the virtual time are
+ * enough to reproduce its choices.
+ * <p>
+ * The log starts with the header: magic, version, domain and profile files, number of issues, timeline type
+ * and total time, seed, and the bid ranking under uncertainty. Then one event per call, each with the normalized time of the call:
+ * a message received from another party, or the action the agent chose. Bids are written as the index of the
+ * value of each issue, in variable-length ints.
+ */
+public class SessionRecorder {
+    static final int MAGIC = 0x47313352; // "G13R"
+    static final int VERSION = 1;
+
+    static final byte END = 0;
+    static final byte RECEIVE = 1;
+    static final byte CHOOSE = 2;
+    static final byte NEW_SENDER = 3;
+
+    static final byte OFFER = 0;
+    static final byte ACCEPT = 1;
+    static final byte END_NEGOTIATION = 2;
+    static final byte OTHER = 3;
+
+    private final BidEncoder encoder;
+    private final DataOutputStream out;
+    private final Map<AgentID, Integer> senders = new HashMap<>();
+    //reused to encode bids without allocating
+    private final int[] encodedBid;
+
+    /**
+     * Opens the log and writes its header.
+     *
+     * @param file        Log file
+     * @param encoder     Index of the domain
+     * @param domainFile  File of the domain
+     * @param profileFile File of the profile of the agent
+     * @param timeline    Timeline of the session
+     * @param seed        Seed the agent was given
+     * @param ranking     Bid ranking of the agent, or null without preference uncertainty
+     */
+    public SessionRecorder(String file, BidEncoder encoder, String domainFile, String profileFile,
+                           TimeLineInfo timeline, long seed, BidRanking ranking) throws IOException {
+        this.encoder = encoder;
+        this.encodedBid = new int[encoder.getNumberOfIssues()];
+        this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeUTF(domainFile);
+        out.writeUTF(profileFile);
+        out.writeInt(encoder.getNumberOfIssues());
+        out.writeBoolean(timeline.getType() == TimeLineInfo.Type.Time);
+        out.writeDouble(timeline.getTotalTime());
+        out.writeLong(seed);
+        if (ranking == null) {
+            out.writeInt(0);
+        } else {
+            out.writeInt(ranking.getSize());
+            for (Bid bid : ranking.getBidOrder())
+                writeBid(bid);
+            out.writeDouble(ranking.getLowUtility());
+            out.writeDouble(ranking.getHighUtility());
+        }
+    }
+
+    /**
+     * @param time   Normalized time of the message
+     * @param sender Party that sent it
+     * @param action Action of the party
+     */
+    public void recordReceive(double time, AgentID sender, Action action) {
+        try {
+            Integer ordinal = senders.get(sender);
+            if (ordinal == null) {
+                ordinal = senders.size();
+                senders.put(sender, ordinal);
+                out.writeByte(NEW_SENDER);
+                out.writeUTF(sender == null ? "" : sender.getName());
+            }
+            out.writeByte(RECEIVE);
+            out.writeDouble(time);
+            writeVarInt(ordinal);
+            writeAction(action);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * @param time   Normalized time of the call to chooseAction
+     * @param action Action the agent chose
+     */
+    public void recordChoose(double time, Action action) {
+        try {
+            out.writeByte(CHOOSE);
+            out.writeDouble(time);
+            writeAction(action);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    public void close() {
+        try {
+            out.writeByte(END);
+            out.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void writeAction(Action action) throws IOException {
+        if (action instanceof Offer) {
+            out.writeByte(OFFER);
+            writeBid(((Offer) action).getBid());
+        } else if (action instanceof Accept) {
+            out.writeByte(ACCEPT);
+            writeBid(((Accept) action).getBid());
+        } else if (action instanceof EndNegotiation) {
+            out.writeByte(END_NEGOTIATION);
+        } else {
+            out.writeByte(OTHER);
+        }
+    }
+
+    /**
+     * The first index is shifted by one, so 0 can stand for a null bid.
+     */
+    private void writeBid(Bid bid) throws IOException {
+        if (bid == null) {
+            writeVarInt(0);
+            return;
+        }
+        encoder.encode(bid, encodedBid);
+        writeVarInt(encodedBid.length == 0 ? 1 : encodedBid[0] + 1);
+        for (int i = 1; i < encodedBid.length; i++)
+            writeVarInt(encodedBid[i]);
+    }
+
+    private void writeVarInt(int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+}
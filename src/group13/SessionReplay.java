@@ -0,0 +1,226 @@
+package group13;
+
+import genius.core.AgentID;
+import genius.core.Bid;
+import genius.core.Deadline;
+import genius.core.DeadlineType;
+import genius.core.Domain;
+import genius.core.DomainImpl;
+import genius.core.actions.Accept;
+import genius.core.actions.Action;
+import genius.core.actions.EndNegotiation;
+import genius.core.actions.Offer;
+import genius.core.parties.NegotiationInfo;
+import genius.core.timeline.TimeLineInfo;
+import genius.core.uncertainty.BidRanking;
+import genius.core.uncertainty.UserModel;
+import genius.core.utility.AdditiveUtilitySpace;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Drives a new Agent13 through a session recorded by {@link SessionRecorder}: same profile, ranking and seed,
+ * the same messages at the same normalized times, on a virtual clock that only moves between calls.
+ * The session runs as fast as the agent can, and every run sees identical inputs, so it can be profiled
+ * or compared between versions of the agent. The agent is made deterministic, as it was while recording, so the
+ * estimate and the work of each turn do not depend on the clock either.
+ * <p>
+ * Usage: SessionReplay log [repeats]
+ */
+public class SessionReplay {
+    private final String domainFile;
+    private final String profileFile;
+    private final int issues;
+    private final boolean timeDeadline;
+    private final double totalTime;
+    private final long seed;
+    private final List<int[]> ranking = new ArrayList<>();
+    private double lowUtility;
+    private double highUtility;
+
+    private final List<String> senders = new ArrayList<>();
+    //events in order: RECEIVE or CHOOSE, time, sender, action and bid
+    private final List<Byte> events = new ArrayList<>();
+    private final List<Byte> actions = new ArrayList<>();
+    private final List<Double> times = new ArrayList<>();
+    private final List<Integer> eventSenders = new ArrayList<>();
+    private final List<int[]> bids = new ArrayList<>();
+
+    /**
+     * Outcome of a replay.
+     */
+    public static class Result {
+        //calls to chooseAction whose action differs from the recorded one
+        public int divergences;
+        public int chooseCalls;
+        public int receiveCalls;
+        public long chooseNanos;
+        public long receiveNanos;
+        public long initNanos;
+        public final List<Action> actions = new ArrayList<>();
+    }
+
+    /**
+     * Reads a log.
+     *
+     * @param file Log written by {@link SessionRecorder}
+     */
+    public SessionReplay(String file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != SessionRecorder.MAGIC || in.readInt() != SessionRecorder.VERSION)
+                throw new IOException(file + " is not a session log of this version");
+            this.domainFile = in.readUTF();
+            this.profileFile = in.readUTF();
+            this.issues = in.readInt();
+            this.timeDeadline = in.readBoolean();
+            this.totalTime = in.readDouble();
+            this.seed = in.readLong();
+
+            int rankingSize = in.readInt();
+            if (rankingSize > 0) {
+                for (int b = 0; b < rankingSize; b++)
+                    ranking.add(readBid(in, issues));
+                this.lowUtility = in.readDouble();
+                this.highUtility = in.readDouble();
+            }
+
+            for (byte event = in.readByte(); event != SessionRecorder.END; event = in.readByte()) {
+                if (event == SessionRecorder.NEW_SENDER) {
+                    senders.add(in.readUTF());
+                    continue;
+                }
+                times.add(in.readDouble());
+                eventSenders.add(event == SessionRecorder.RECEIVE ? readVarInt(in) : -1);
+                byte action = in.readByte();
+                events.add(event);
+                actions.add(action);
+                boolean hasBid = action == SessionRecorder.OFFER || action == SessionRecorder.ACCEPT;
+                bids.add(hasBid ? readBid(in, issues) : null);
+            }
+        }
+    }
+
+    private static int[] readBid(DataInputStream in, int issues) throws IOException {
+        int first = readVarInt(in);
+        if (first == 0)
+            return null;
+        int[] bid = new int[issues];
+        if (issues > 0)
+            bid[0] = first - 1;
+        for (int i = 1; i < issues; i++)
+            bid[i] = readVarInt(in);
+        return bid;
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                return value;
+        }
+    }
+
+    /**
+     * Replays the session on a new agent.
+     *
+     * @return Actions of the agent, divergences from the log and time spent in each call
+     */
+    public Result run() throws Exception {
+        Result result = new Result();
+        Domain domain = new DomainImpl(domainFile);
+        AdditiveUtilitySpace space = new AdditiveUtilitySpace(domain, profileFile);
+        BidEncoder encoder = new BidEncoder(domain);
+
+        UserModel userModel = null;
+        if (!ranking.isEmpty()) {
+            List<Bid> rankedBids = new ArrayList<>(ranking.size());
+            for (int[] bid : ranking)
+                rankedBids.add(encoder.decode(bid));
+            userModel = new UserModel(new BidRanking(rankedBids, lowUtility, highUtility));
+        }
+
+        VirtualTimeline timeline = new VirtualTimeline(timeDeadline ? TimeLineInfo.Type.Time : TimeLineInfo.Type.Rounds, totalTime);
+        Deadline deadline = new Deadline((int) totalTime, timeDeadline ? DeadlineType.TIME : DeadlineType.ROUND);
+        AgentID self = new AgentID("Agent13@replay");
+        AgentID[] senderIds = new AgentID[senders.size()];
+        for (int s = 0; s < senderIds.length; s++)
+            senderIds[s] = new AgentID(senders.get(s));
+
+        Agent13 agent = new Agent13();
+        agent.setDeterministic();
+        long start = System.nanoTime();
+        agent.init(new NegotiationInfo(space, userModel, null, deadline, timeline, seed, self, null));
+        result.initNanos = System.nanoTime() - start;
+
+        boolean offerOnTable = false;
+        for (int e = 0; e < events.size(); e++) {
+            timeline.setTime(times.get(e));
+            byte action = actions.get(e);
+            Bid bid = bids.get(e) == null ? null : encoder.decode(bids.get(e));
+
+            if (events.get(e) == SessionRecorder.RECEIVE) {
+                AgentID sender = senderIds[eventSenders.get(e)];
+                Action received = toAction(action, sender, bid);
+                offerOnTable |= action == SessionRecorder.OFFER;
+                start = System.nanoTime();
+                agent.receiveMessage(sender, received);
+                result.receiveNanos += System.nanoTime() - start;
+                result.receiveCalls++;
+            } else {
+                List<Class<? extends Action>> allowed = offerOnTable
+                        ? Arrays.asList(Accept.class, Offer.class, EndNegotiation.class)
+                        : Arrays.asList(Offer.class, EndNegotiation.class);
+                start = System.nanoTime();
+                Action chosen = agent.chooseAction(allowed);
+                result.chooseNanos += System.nanoTime() - start;
+                result.chooseCalls++;
+                result.actions.add(chosen);
+                offerOnTable |= chosen instanceof Offer;
+                if (!sameAction(chosen, action, bid))
+                    result.divergences++;
+            }
+        }
+        agent.negotiationEnded(null);
+        return result;
+    }
+
+    private static Action toAction(byte kind, AgentID agent, Bid bid) {
+        switch (kind) {
+            case SessionRecorder.OFFER:
+                return new Offer(agent, bid);
+            case SessionRecorder.ACCEPT:
+                return new Accept(agent, bid);
+            default:
+                return new EndNegotiation(agent);
+        }
+    }
+
+    private static boolean sameAction(Action action, byte kind, Bid bid) {
+        if (action instanceof Offer)
+            return kind == SessionRecorder.OFFER && ((Offer) action).getBid().equals(bid);
+        if (action instanceof Accept)
+            return kind == SessionRecorder.ACCEPT;
+        if (action instanceof EndNegotiation)
+            return kind == SessionRecorder.END_NEGOTIATION;
+        return kind == SessionRecorder.OTHER;
+    }
+
+    public static void main(String[] args) throws Exception {
+        SessionReplay replay = new SessionReplay(args[0]);
+        int repeats = args.length > 1 ? Integer.parseInt(args[1]) : 1;
+        for (int r = 0; r < repeats; r++) {
+            Result result = replay.run();
+            System.out.printf("run %d: init %.3f ms, %d chooseAction in %.3f ms, %d receiveMessage in %.3f ms, %d divergences%n",
+                    r, result.initNanos / 1e6, result.chooseCalls, result.chooseNanos / 1e6,
+                    result.receiveCalls, result.receiveNanos / 1e6, result.divergences);
+        }
+    }
+}
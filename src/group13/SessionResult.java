@@ -0,0 +1,111 @@
+package group13;
+
+import genius.core.DeadlineType;
+
+import java.io.File;
+import java.util.Locale;
+
+/**
+ * Outcome of a session run by {@link SessionRunner}, written as a row of the tournament report.
+ * The columns follow the logs of the Genius XmlRunner, so the same tools read both.
+ */
+public class SessionResult {
+    private final TournamentSpec.Session session;
+    private final long seed;
+    private final String[] agents;
+    private final double[] utilities;
+    private String exception = "";
+    private boolean agreement;
+    private int rounds;
+    private double runTime;
+
+    public SessionResult(TournamentSpec.Session session, long seed) {
+        this.session = session;
+        this.seed = seed;
+        this.agents = new String[session.parties.size()];
+        this.utilities = new double[session.parties.size()];
+        for (int p = 0; p < agents.length; p++) {
+            String className = session.parties.get(p);
+            this.agents[p] = className.substring(className.lastIndexOf('.') + 1);
+        }
+    }
+
+    void setUtility(int participant, double utility) {
+        this.utilities[participant] = utility;
+    }
+
+    void setException(String exception) {
+        this.exception = exception.replace(';', ',');
+    }
+
+    void setOutcome(boolean agreement, int rounds, double runTime) {
+        this.agreement = agreement;
+        this.rounds = rounds;
+        this.runTime = runTime;
+    }
+
+    /**
+     * @param participants Number of participants per session
+     * @return Header of the report
+     */
+    public static String header(int participants) {
+        StringBuilder header = new StringBuilder("Run time (s);Round;Exception;deadline;Agreement;#agreeing;min.util.;max.util.;Social Welfare;Seed");
+        for (String column : new String[]{"Agent", "Utility", "Profile"}) {
+            for (int p = 1; p <= participants; p++)
+                header.append(';').append(column).append(' ').append(p);
+        }
+        return header.toString();
+    }
+
+    public String toRow() {
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        double welfare = 0;
+        for (double utility : utilities) {
+            min = Math.min(min, utility);
+            max = Math.max(max, utility);
+            welfare += utility;
+        }
+
+        StringBuilder row = new StringBuilder();
+        row.append(String.format(Locale.ROOT, "%.3f", runTime)).append(';')
+                .append(rounds).append(';')
+                .append(exception).append(';')
+                .append(session.deadline.getValue()).append(session.deadline.getType() == DeadlineType.ROUND ? "rounds" : "s").append(';')
+                .append(agreement ? "Yes" : "No").append(';')
+                .append(agreement ? agents.length : 0).append(';')
+                .append(min).append(';')
+                .append(max).append(';')
+                .append(welfare).append(';')
+                .append(seed);
+        for (String agent : agents)
+            row.append(';').append(agent);
+        for (double utility : utilities)
+            row.append(';').append(utility);
+        for (String profile : session.profiles) {
+            String name = new File(profile).getName();
+            row.append(';').append(name.endsWith(".xml") ? name.substring(0, name.length() - 4) : name);
+        }
+        return row.toString();
+    }
+
+    public String getAgent(int participant) {
+        return agents[participant];
+    }
+
+    public double getUtility(int participant) {
+        return utilities[participant];
+    }
+
+    public boolean isAgreement() {
+        return agreement;
+    }
+
+    public boolean hasException() {
+        return !exception.isEmpty();
+    }
+
+    public TournamentSpec.Session getSession() {
+        return session;
+    }
+}
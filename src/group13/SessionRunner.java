@@ -0,0 +1,164 @@
+package group13;
+
+import genius.core.AgentID;
+import genius.core.Bid;
+import genius.core.DeadlineType;
+import genius.core.Domain;
+import genius.core.DomainImpl;
+import genius.core.actions.Accept;
+import genius.core.actions.Action;
+import genius.core.actions.EndNegotiation;
+import genius.core.actions.Offer;
+import genius.core.parties.NegotiationInfo;
+import genius.core.parties.NegotiationParty;
+import genius.core.timeline.TimeLineInfo;
+import genius.core.uncertainty.BidRanking;
+import genius.core.uncertainty.UserModel;
+import genius.core.utility.AdditiveUtilitySpace;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+/**
+ * Runs one session of the Stacked Alternating Offers Protocol in the calling thread.
+ * Every participant gets its own domain, utility space and party instance, so sessions can run concurrently.
+ * All randomness (rankings of uncertain profiles, seeds of the parties) derives from the seed of the session.
+ * <p>
+ * A time deadline is measured on the wall clock, unless the session is given a virtual time per action: sessions
+ * sharing the cores would otherwise get fewer rounds the more of them run at the same time.
+ */
+public class SessionRunner implements Callable<SessionResult> {
+    //virtual seconds an action takes under a time deadline, for sessions run in parallel
+    public static final double DEFAULT_TURN_SECONDS = 0.05;
+
+    private final TournamentSpec.Session session;
+    private final long seed;
+    private final double turnSeconds;
+
+    /**
+     * @param session Session to run
+     * @param seed    Seed of the session
+     */
+    public SessionRunner(TournamentSpec.Session session, long seed) {
+        this(session, seed, 0);
+    }
+
+    /**
+     * @param session     Session to run
+     * @param seed        Seed of the session
+     * @param turnSeconds Seconds of a time deadline each action takes on the virtual clock, 0 for the wall clock
+     */
+    public SessionRunner(TournamentSpec.Session session, long seed, double turnSeconds) {
+        this.session = session;
+        this.seed = seed;
+        this.turnSeconds = turnSeconds;
+    }
+
+    @Override
+    public SessionResult call() {
+        long start = System.nanoTime();
+        int n = session.parties.size();
+        SessionResult result = new SessionResult(session, seed);
+        Random random = new Random(seed);
+
+        AdditiveUtilitySpace[] spaces = new AdditiveUtilitySpace[n];
+        NegotiationParty[] parties = new NegotiationParty[n];
+        AgentID[] ids = new AgentID[n];
+        boolean rounds = session.deadline.getType() == DeadlineType.ROUND;
+        VirtualTimeline timeline = new VirtualTimeline(rounds ? TimeLineInfo.Type.Rounds : TimeLineInfo.Type.Time,
+                session.deadline.getValue());
+
+        try {
+            for (int p = 0; p < n; p++) {
+                Domain domain = new DomainImpl(session.domain);
+                spaces[p] = new AdditiveUtilitySpace(domain, session.profiles.get(p));
+                UserModel userModel = session.rankingSizes[p] == 0 ? null
+                        : new UserModel(ranking(spaces[p], session.rankingSizes[p], random));
+
+                ids[p] = new AgentID(result.getAgent(p) + "@" + p);
+                parties[p] = (NegotiationParty) Class.forName(session.parties.get(p)).getDeclaredConstructor()
+                        .newInstance();
+                parties[p].init(new NegotiationInfo(spaces[p], userModel, null, session.deadline, timeline,
+                        random.nextLong(), ids[p], null));
+            }
+        } catch (Exception e) {
+            result.setException("failed to construct " + session.parties + ": " + e);
+            return result;
+        }
+
+        Bid agreement = null;
+        int round = 0;
+        try {
+            Bid currentBid = null;
+            int accepts = 0;
+            long clockStart = System.nanoTime();
+            negotiation:
+            for (round = 0; ; round++) {
+                for (int p = 0; p < n; p++) {
+                    double time = rounds ? (double) round / session.deadline.getValue()
+                            : turnSeconds > 0 ? (round * n + p) * turnSeconds / session.deadline.getValue()
+                            : (System.nanoTime() - clockStart) / 1e9 / session.deadline.getValue();
+                    if (time >= 1)
+                        break negotiation;
+                    timeline.setTime(time);
+
+                    List<Class<? extends Action>> allowed = currentBid == null
+                            ? Arrays.asList(Offer.class, EndNegotiation.class)
+                            : Arrays.asList(Accept.class, Offer.class, EndNegotiation.class);
+                    Action action = parties[p].chooseAction(allowed);
+                    for (int q = 0; q < n; q++) {
+                        if (q != p)
+                            parties[q].receiveMessage(ids[p], action);
+                    }
+
+                    if (action instanceof Offer) {
+                        currentBid = ((Offer) action).getBid();
+                        accepts = 0;
+                    } else if (action instanceof Accept && currentBid != null) {
+                        accepts++;
+                        if (accepts == n - 1) {
+                            agreement = currentBid;
+                            break negotiation;
+                        }
+                    } else {
+                        break negotiation;
+                    }
+                }
+            }
+        } catch (Exception e) {
+            result.setException(e.toString());
+        }
+
+        for (int p = 0; p < n; p++) {
+            result.setUtility(p, agreement == null ? spaces[p].getReservationValue()
+                    : spaces[p].getUtility(agreement));
+            try {
+                parties[p].negotiationEnded(agreement);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+        result.setOutcome(agreement != null, round, (System.nanoTime() - start) / 1e9);
+        return result;
+    }
+
+    /**
+     * Stand-in for the elicitation of Genius: distinct random bids of the domain, as many as it has if it is
+     * smaller, ordered by the real utility.
+     */
+    private static BidRanking ranking(AdditiveUtilitySpace space, int size, Random random) {
+        Set<Bid> distinct = new LinkedHashSet<>();
+        long count = Math.min(size, space.getDomain().getNumberOfPossibleBids());
+        while (distinct.size() < count)
+            distinct.add(space.getDomain().getRandomBid(random));
+        List<Bid> bids = new ArrayList<>(distinct);
+        bids.sort(Comparator.comparingDouble(space::getUtility));
+        return new BidRanking(bids, space.getUtility(bids.get(0)), space.getUtility(bids.get(bids.size() - 1)));
+    }
+}
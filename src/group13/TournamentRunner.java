@@ -0,0 +1,138 @@
+package group13;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs a tournament without the Genius GUI: every session of the configuration runs in its own thread of a pool
+ * as big as the machine, and each result is appended to the report as soon as its session ends.
+ * With more than one thread, time deadlines run on a virtual clock where every action takes the seconds given by
+ * the system property group13.turnSeconds ({@link SessionRunner#DEFAULT_TURN_SECONDS} by default), so the
+ * sessions do not depend on how many share the cores.
+ * <p>
+ * Usage: TournamentRunner [configuration] [threads] [seed] [report]
+ * (defaults: negotiation.xml, number of cores, 13, logs/Log-TournamentRunner-&lt;date&gt;.csv)
+ */
+public class TournamentRunner {
+    private final TournamentSpec spec;
+    private final int threads;
+    private final long seed;
+    //virtual seconds per action of the sessions, 0 for the wall clock
+    private final double turnSeconds;
+
+    /**
+     * @param spec    Sessions to run
+     * @param threads Number of sessions run at the same time
+     * @param seed    Seed of the tournament; session i runs with a seed derived from it and i
+     */
+    public TournamentRunner(TournamentSpec spec, int threads, long seed) {
+        this.spec = spec;
+        this.threads = threads;
+        this.seed = seed;
+        this.turnSeconds = threads > 1
+                ? Double.parseDouble(System.getProperty("group13.turnSeconds", String.valueOf(SessionRunner.DEFAULT_TURN_SECONDS)))
+                : 0;
+    }
+
+    /**
+     * @param session Index of the session
+     * @return Seed of the session, the same whatever the order the sessions run in
+     */
+    private long sessionSeed(int session) {
+        long z = seed + 0x9E3779B97F4A7C15L * (session + 1);
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Runs all the sessions and writes their results, in the order they end.
+     *
+     * @param report File the results are written to
+     * @return Mean utility and agreement rate of each agent
+     */
+    public Map<String, double[]> run(File report) throws IOException, InterruptedException {
+        List<TournamentSpec.Session> sessions = spec.getSessions();
+        int participants = 0;
+        for (TournamentSpec.Session session : sessions)
+            participants = Math.max(participants, session.parties.size());
+
+        // per agent: sessions, sum of utilities, agreements
+        Map<String, double[]> totals = new LinkedHashMap<>();
+        ExecutorService pool = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "group13-session");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(report))) {
+            writer.write("sep=;");
+            writer.newLine();
+            writer.write(SessionResult.header(participants));
+            writer.newLine();
+
+            CompletionService<SessionResult> results = new ExecutorCompletionService<>(pool);
+            for (TournamentSpec.Session session : sessions)
+                results.submit(new SessionRunner(session, sessionSeed(session.index), turnSeconds));
+
+            for (int done = 0; done < sessions.size(); done++) {
+                SessionResult result;
+                try {
+                    result = results.take().get();
+                } catch (ExecutionException e) {
+                    e.getCause().printStackTrace();
+                    continue;
+                }
+                writer.write(result.toRow());
+                writer.newLine();
+                writer.flush();
+
+                for (int p = 0; p < result.getSession().parties.size(); p++) {
+                    double[] total = totals.computeIfAbsent(result.getAgent(p), agent -> new double[3]);
+                    total[0] += 1;
+                    total[1] += result.getUtility(p);
+                    total[2] += result.isAgreement() ? 1 : 0;
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        for (double[] total : totals.values()) {
+            total[1] /= total[0];
+            total[2] /= total[0];
+        }
+        return totals;
+    }
+
+    public static void main(String[] args) throws Exception {
+        String configuration = args.length > 0 ? args[0] : "negotiation.xml";
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : 13;
+        String report = args.length > 3 ? args[3]
+                : "logs/Log-TournamentRunner-" + new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date()) + ".csv";
+
+        TournamentSpec spec = new TournamentSpec(new File(configuration), new File("domainrepository.xml"),
+                new File("partyrepository.xml"));
+        System.out.println(spec.getSessions().size() + " sessions on " + threads + " threads");
+
+        long start = System.nanoTime();
+        Map<String, double[]> totals = new TournamentRunner(spec, threads, seed).run(new File(report));
+        System.out.printf("Finished in %.1f s, results in %s%n", (System.nanoTime() - start) / 1e9, report);
+        for (Map.Entry<String, double[]> entry : totals.entrySet()) {
+            System.out.printf("%-30s sessions %5d  mean utility %.4f  agreements %.1f%%%n", entry.getKey(),
+                    (int) entry.getValue()[0], entry.getValue()[1], 100 * entry.getValue()[2]);
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package group13;
+
+import genius.core.Deadline;
+import genius.core.DeadlineType;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Sessions of a tournament, read from a Genius multilateralTournamentsConfiguration (like negotiation.xml).
+ * The domain of each profile is looked up in domainrepository.xml and the parties are checked against
+ * partyrepository.xml. Every ordered choice of parties is matched with every ordered choice of profiles,
+ * once per repeat. Sessions are run by {@link SessionRunner}, which implements the Stacked Alternating Offers
+ * Protocol only, so a tournament with another protocol is rejected.
+ */
+public class TournamentSpec {
+    //profiles named like party1_utility_u50.xml give the agent a ranking of that many bids
+    private static final Pattern UNCERTAIN_PROFILE = Pattern.compile("_u(\\d+)\\.xml$");
+    //the only protocol SessionRunner implements
+    public static final String PROTOCOL = "genius.core.protocol.StackedAlternatingOffersProtocol";
+
+    /**
+     * One negotiation: a party class on a profile for each participant.
+     */
+    public static class Session {
+        public final int index;
+        public final Deadline deadline;
+        public final String domain;
+        public final List<String> parties;
+        public final List<String> profiles;
+        //size of the bid ranking of each participant, 0 for full information
+        public final int[] rankingSizes;
+
+        Session(int index, Deadline deadline, String domain, List<String> parties, List<String> profiles) {
+            this.index = index;
+            this.deadline = deadline;
+            this.domain = domain;
+            this.parties = parties;
+            this.profiles = profiles;
+            this.rankingSizes = new int[profiles.size()];
+            for (int p = 0; p < profiles.size(); p++) {
+                Matcher matcher = UNCERTAIN_PROFILE.matcher(profiles.get(p));
+                this.rankingSizes[p] = matcher.find() ? Integer.parseInt(matcher.group(1)) : 0;
+            }
+        }
+    }
+
+    private final List<Session> sessions = new ArrayList<>();
+
+    /**
+     * @param configuration Tournament configuration
+     * @param domains       Domain repository
+     * @param parties       Party repository
+     */
+    public TournamentSpec(File configuration, File domains, File parties) throws Exception {
+        Map<String, String> domainOfProfile = readDomains(domains);
+        Set<String> knownParties = readParties(parties);
+
+        Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(configuration);
+        NodeList tournaments = document.getElementsByTagName("tournament");
+        for (int t = 0; t < tournaments.getLength(); t++) {
+            Element tournament = (Element) tournaments.item(t);
+            Element protocol = (Element) tournament.getElementsByTagName("protocolItem").item(0);
+            if (protocol != null && !PROTOCOL.equals(protocol.getAttribute("classPath")))
+                throw new IllegalArgumentException("Tournament " + t + " of " + configuration + " uses "
+                        + protocol.getAttribute("classPath") + ", only " + PROTOCOL + " is supported");
+            Element deadline = (Element) tournament.getElementsByTagName("deadline").item(0);
+            Deadline sessionDeadline = new Deadline(Integer.parseInt(text(deadline, "value")),
+                    DeadlineType.valueOf(text(deadline, "type")));
+
+            List<String> partyClasses = new ArrayList<>();
+            NodeList partyItems = tournament.getElementsByTagName("party");
+            for (int p = 0; p < partyItems.getLength(); p++) {
+                String classPath = toClassName(((Element) partyItems.item(p)).getAttribute("classPath"));
+                if (!knownParties.contains(classPath) && !classPath.equals(Agent13.class.getName()))
+                    System.err.println("Party " + classPath + " is not in " + parties);
+                partyClasses.add(classPath);
+            }
+
+            List<String> profiles = new ArrayList<>();
+            NodeList profileItems = ((Element) tournament.getElementsByTagName("partyProfileItems").item(0))
+                    .getElementsByTagName("item");
+            for (int p = 0; p < profileItems.getLength(); p++)
+                profiles.add(toPath(((Element) profileItems.item(p)).getAttribute("url")));
+
+            int perSession = Integer.parseInt(text(tournament, "numberOfPartiesPerSession"));
+            boolean repetition = Boolean.parseBoolean(text(tournament, "repetitionAllowed"));
+            int repeats = Integer.parseInt(text(tournament, "repeats"));
+
+            List<List<String>> partyTuples = tuples(partyClasses, perSession, repetition);
+            List<List<String>> profileTuples = tuples(profiles, perSession, false);
+            for (int r = 0; r < repeats; r++) {
+                for (List<String> partyTuple : partyTuples) {
+                    for (List<String> profileTuple : profileTuples) {
+                        String domain = domainOfProfile.get(profileTuple.get(0));
+                        if (domain == null)
+                            throw new IllegalArgumentException("No domain in " + domains + " for " + profileTuple.get(0));
+                        sessions.add(new Session(sessions.size(), sessionDeadline, domain, partyTuple, profileTuple));
+                    }
+                }
+            }
+        }
+    }
+
+    public List<Session> getSessions() {
+        return sessions;
+    }
+
+    private static String text(Element parent, String tag) {
+        return parent.getElementsByTagName(tag).item(0).getTextContent().trim();
+    }
+
+    /**
+     * Classes of the project are given as the path of the compiled file, e.g. out/production/x/group13/Agent13.class
+     */
+    private static String toClassName(String classPath) {
+        if (!classPath.endsWith(".class"))
+            return classPath;
+        String[] parts = classPath.substring(0, classPath.length() - ".class".length()).split("/");
+        return parts.length < 2 ? parts[0] : parts[parts.length - 2] + "." + parts[parts.length - 1];
+    }
+
+    private static String toPath(String url) {
+        return url.startsWith("file:") ? url.substring("file:".length()) : url;
+    }
+
+    /**
+     * @return Every ordered choice of size elements of the list
+     */
+    private static List<List<String>> tuples(List<String> items, int size, boolean repetition) {
+        List<List<String>> result = new ArrayList<>();
+        addTuples(items, size, repetition, new ArrayList<>(), new boolean[items.size()], result);
+        return result;
+    }
+
+    private static void addTuples(List<String> items, int size, boolean repetition, List<String> current,
+                                  boolean[] used, List<List<String>> result) {
+        if (current.size() == size) {
+            result.add(new ArrayList<>(current));
+            return;
+        }
+        for (int i = 0; i < items.size(); i++) {
+            if (used[i] && !repetition)
+                continue;
+            used[i] = true;
+            current.add(items.get(i));
+            addTuples(items, size, repetition, current, used, result);
+            current.remove(current.size() - 1);
+            used[i] = false;
+        }
+    }
+
+    /**
+     * @param file Domain repository
+     * @return Path of the domain of each profile
+     */
+    static Map<String, String> readDomains(File file) throws Exception {
+        Map<String, String> domainOfProfile = new HashMap<>();
+        Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(file);
+        NodeList domains = document.getElementsByTagName("domainRepItem");
+        for (int d = 0; d < domains.getLength(); d++) {
+            Element domain = (Element) domains.item(d);
+            if (!domain.hasAttribute("url"))
+                continue;
+            NodeList profiles = domain.getElementsByTagName("profile");
+            for (int p = 0; p < profiles.getLength(); p++)
+                domainOfProfile.put(toPath(((Element) profiles.item(p)).getAttribute("url")), toPath(domain.getAttribute("url")));
+        }
+        return domainOfProfile;
+    }
+
+    private static Set<String> readParties(File file) throws Exception {
+        Set<String> parties = new HashSet<>();
+        Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(file);
+        NodeList items = document.getElementsByTagName("partyRepItem");
+        for (int p = 0; p < items.getLength(); p++) {
+            Element item = (Element) items.item(p);
+            if (item.hasAttribute("classPath"))
+                parties.add(toClassName(item.getAttribute("classPath")));
+        }
+        return parties;
+    }
+}
@@ -2,36 +2,28 @@ package group13;
 
 import genius.core.Bid;
 import genius.core.Domain;
-import genius.core.issue.Issue;
-import genius.core.issue.IssueDiscrete;
-import genius.core.issue.ValueDiscrete;
-import genius.core.uncertainty.AdditiveUtilitySpaceFactory;
 import genius.core.uncertainty.BidRanking;
-import genius.core.utility.AdditiveUtilitySpace;
-import genius.core.utility.EvaluatorDiscrete;
-import org.apache.commons.math3.optimization.GoalType;
-import org.apache.commons.math3.optimization.PointValuePair;
-import org.apache.commons.math3.optimization.linear.LinearConstraint;
-import org.apache.commons.math3.optimization.linear.LinearObjectiveFunction;
-import org.apache.commons.math3.optimization.linear.Relationship;
-import org.apache.commons.math3.optimization.linear.SimplexSolver;
 
 import java.util.*;
 
-@SuppressWarnings("deprecation")
-
-public class UncertaintyModelling extends AdditiveUtilitySpaceFactory {
-    private final Domain domain;
-    private AdditiveUtilitySpace u;
-    private ArrayList<Integer>[][] positions;
-    private Double[][] means;
+/**
+ * Estimates our utility from a bid ranking. The estimate is computed on the encoding of the domain, so it covers
+ * the bins of integer and real issues too, and is seen by Genius through an {@link EstimatedUtilitySpace}.
+ */
+public class UncertaintyModelling {
+    private final BidEncoder encoder;
+    //utility space of Genius over the latest estimate
+    private final EstimatedUtilitySpace space;
+    //latest published estimate, replaced as a whole when a refinement finishes
+    private volatile Estimate estimate;
     private int threshold;
-    //Maps each issue to an integer in range [0,i-1]; i - number of issues
-    private HashMap<Integer, Integer> mapping_issues = new HashMap<>();
-    //Maps the number of values per issue
-    private HashMap<Integer, Integer> number_values_per_issue = new HashMap<>();
-    //Maps each value to an integer in range [0,v-1]; v - number of values
-    private HashMap<String, Integer> mapping_values = new HashMap<String, Integer>();
+    //time the LP may take before falling back to the heuristic
+    private long lpBudgetMillis;
+    //Position of the first value of each issue in the rows of the LP
+    private int[] issue_offsets;
+    //weight of each issue and utility of each value of the estimate being calculated
+    private double[] weights;
+    private double[][] valueUtilities;
 
     /**
      * Generates an simple Utility Space on the domain, with equal weights and zero values.
@@ -40,9 +32,39 @@ public class UncertaintyModelling extends AdditiveUtilitySpaceFactory {
      * @param d Negotiation Domain
      */
     public UncertaintyModelling(Domain d) {
-        super(d);
-        this.domain = d;
-        this.threshold = 3500;
+        this(new BidEncoder(d));
+    }
+
+    /**
+     * Generates an simple Utility Space on the domain, sharing the index of the domain.
+     *
+     * @param encoder Index of the negotiation domain
+     */
+    public UncertaintyModelling(BidEncoder encoder) {
+        this.encoder = encoder;
+        //about a thousand ranked bids on a domain of 25 values, solved in a few hundred milliseconds
+        this.threshold = 25000;
+        this.lpBudgetMillis = 1000;
+        this.space = new EstimatedUtilitySpace(this);
+    }
+
+    public BidEncoder getEncoder() {
+        return this.encoder;
+    }
+
+    /**
+     * @param millis Time the linear programming may take before the heuristic is used instead; 0 for no deadline,
+     *               so the result does not depend on the speed of the machine
+     */
+    public void setLPBudget(long millis) {
+        this.lpBudgetMillis = millis;
+    }
+
+    /**
+     * @param threshold Largest number of values times ranked bids solved with linear programming; 0 disables it
+     */
+    public void setLPThreshold(int threshold) {
+        this.threshold = threshold;
     }
 
     /**
@@ -51,210 +73,274 @@ public class UncertaintyModelling extends AdditiveUtilitySpaceFactory {
      * @param bids Bid Ranking
      */
     public void UncertaintyEstimation(BidRanking bids) {
-        List<Bid> Bids = bids.getBidOrder();
-
-        double lowerUtility = bids.getLowUtility();
-        double higherUtility = bids.getHighUtility();
+        UncertaintyEstimation(encode(bids.getBidOrder()), bids.getLowUtility(), bids.getHighUtility());
+    }
 
-        List<Issue> issues = this.getDomain().getIssues();
-        this.positions = new ArrayList[this.getDomain().getIssues().size()][];
-        this.means = new Double[this.getDomain().getIssues().size()][];
+    /**
+     * Estimates from a ranking that was already encoded, so rankings sharing bids can share their encoding.
+     * The arrays are only read.
+     *
+     * @param ranking       Index of the value of each issue of each bid, from the worst bid to the best one
+     * @param lowerUtility  the lowest utility in the ranking
+     * @param higherUtility the highest utility in the ranking
+     */
+    public void UncertaintyEstimation(int[][] ranking, double lowerUtility, double higherUtility) {
+        int vars = setup();
 
-        int vars = 0;
-        int key = 0;
-        for (Issue issue : issues) {
-            int issueNumber = issue.getNumber();
-            IssueDiscrete issueD = (IssueDiscrete) issue;
-            int nvalues_issue = issueD.getValues().size();
-            this.positions[key] = new ArrayList[nvalues_issue];
-            this.means[key] = new Double[nvalues_issue];
+        if (vars * ranking.length > this.threshold || !LP(ranking, vars, lowerUtility, higherUtility))
+            heuristic_calculation(ranking);
 
-            int count_values = 0;
-            for (ValueDiscrete valueDiscrete : issueD.getValues()) {
-                this.mapping_values.put(valueDiscrete.toString() + issueNumber, count_values);
+        publish();
+    }
 
-                this.positions[key][count_values] = new ArrayList<>();
+    /**
+     * @param Bids List of Bids ordered by relative preference
+     * @return Encoding of each bid
+     */
+    private int[][] encode(List<Bid> Bids) {
+        int[][] ranking = new int[Bids.size()][];
+        for (int k = 0; k < ranking.length; k++)
+            ranking[k] = this.encoder.encode(Bids.get(k));
+        return ranking;
+    }
 
-                count_values += 1;
+    /**
+     * Anytime estimation: publishes the heuristic estimate right away and, if the ranking is small enough
+     * for linear programming, refines it on a background thread. The refined estimate replaces the heuristic
+     * one atomically when (and only if) the LP finishes within the budget.
+     *
+     * @param bids         Bid Ranking
+     * @param budgetMillis Time the refinement may take
+     */
+    public void UncertaintyEstimationAnytime(BidRanking bids, long budgetMillis) {
+        int[][] ranking = encode(bids.getBidOrder());
+        int vars = setup();
+
+        heuristic_calculation(ranking);
+        publish();
+
+        if (vars * ranking.length > this.threshold)
+            return;
+
+        Thread refinement = new Thread(() -> {
+            UncertaintyModelling lp = new UncertaintyModelling(this.encoder);
+            lp.setLPBudget(budgetMillis);
+            if (lp.LP(ranking, lp.setup(), bids.getLowUtility(), bids.getHighUtility())) {
+                lp.publish();
+                this.estimate = new Estimate(lp.estimate.encoded, this.estimate.version + 1);
             }
+        }, "group13-estimation");
+        refinement.setDaemon(true);
+        refinement.start();
+    }
 
-            this.number_values_per_issue.put(key, nvalues_issue);
-            this.mapping_issues.put(issueNumber, key++);
+    /**
+     * Prepares the offset of each issue in the LP variables.
+     *
+     * @return Number of values in the domain
+     */
+    private int setup() {
+        int nissues = this.encoder.getNumberOfIssues();
+        this.issue_offsets = new int[nissues];
+
+        this.weights = new double[nissues];
+        this.valueUtilities = new double[nissues][];
+
+        int vars = 0;
+        for (int key = 0; key < nissues; key++) {
+            int nvalues_issue = this.encoder.getNumberOfValues(key);
+            this.issue_offsets[key] = vars;
+            this.valueUtilities[key] = new double[nvalues_issue];
             vars += nvalues_issue;
         }
+        return vars;
+    }
 
-        if (vars * Bids.size() <= this.threshold)
-            LP(Bids, vars, lowerUtility, higherUtility, issues);
-        else
-            heuristic_calculation(Bids, issues);
-
-        for (Issue i : issues) {
-            EvaluatorDiscrete evaluator = (EvaluatorDiscrete) this.u.getEvaluator(i);
-            evaluator.normalizeAll();
+    /**
+     * Normalizes the estimate that was just calculated and makes it the current estimate: the values of each issue
+     * are scaled from 0 to 1 and the weights sum to 1.
+     */
+    private void publish() {
+        double totalWeight = 0;
+        for (double weight : this.weights)
+            totalWeight += weight;
+
+        for (int key = 0; key < this.weights.length; key++) {
+            double[] values = this.valueUtilities[key];
+            double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+            for (double value : values) {
+                min = Math.min(min, value);
+                max = Math.max(max, value);
+            }
+            for (int valueKey = 0; valueKey < values.length; valueKey++)
+                values[valueKey] = max > min ? (values[valueKey] - min) / (max - min) : max > 0 ? 1 : 0;
+            this.weights[key] /= totalWeight;
         }
-        this.scaleAllValuesFrom0To1();
-        this.normalizeWeights();
+
+        int version = this.estimate == null ? 0 : this.estimate.version + 1;
+        this.estimate = new Estimate(new EncodedUtilitySpace(this.encoder, this.weights, this.valueUtilities), version);
+    }
+
+    /**
+     * Calculates the estimated utility of an encoded bid, without going through the utility space.
+     * Only valid after {@link #UncertaintyEstimation(BidRanking)}.
+     *
+     * @param encoded Index of the value of each issue
+     * @return Estimated utility of the bid
+     */
+    public double getUtility(int[] encoded) {
+        return this.estimate.encoded.getUtility(encoded);
+    }
+
+    public EncodedUtilitySpace getEncodedUtilitySpace() {
+        return this.estimate.encoded;
+    }
+
+    /**
+     * @return Utility space of Genius that always evaluates the current estimate, which may be replaced by a refined
+     * one during an anytime estimation
+     */
+    public EstimatedUtilitySpace getEstimatedUtilitySpace() {
+        return this.space;
+    }
+
+    /**
+     * @return Number that changes every time a new estimate is published
+     */
+    public int getEstimateVersion() {
+        return this.estimate.version;
     }
 
     /**
      * Calculates uncertainty modelling based on an heuristic, taking into account the position of each value
      * in the ranking bid.
      *
-     * @param Bids List of Bids ordered by relative preference
+     * @param ranking Encoded bids ordered by relative preference
      */
-    private void heuristic_calculation(List<Bid> Bids, List<Issue> issues) {
-        this.u = getUtilitySpace();
+    private void heuristic_calculation(int[][] ranking) {
+        //running count, mean and sum of squared deviations (Welford) of the positions of each value
+        int nissues = this.encoder.getNumberOfIssues();
+        int[][] count = new int[nissues][];
+        double[][] mean = new double[nissues][];
+        double[][] squares = new double[nissues][];
+        for (int key = 0; key < nissues; key++) {
+            count[key] = new int[this.encoder.getNumberOfValues(key)];
+            mean[key] = new double[count[key].length];
+            squares[key] = new double[count[key].length];
+        }
 
         int points = 1;
 
-        for (Bid b : Bids) {
-            for (Issue issue : b.getIssues()) {
-                int issueNumber = issue.getNumber();
-                ValueDiscrete value = (ValueDiscrete) b.getValue(issueNumber);
-
-                this.positions[mapping_issues.get(issueNumber)][mapping_values.get(value + String.valueOf(issueNumber))].add(points);
+        for (int[] encoded : ranking) {
+            for (int key = 0; key < encoded.length; key++) {
+                int valueKey = encoded[key];
+                double delta = points - mean[key][valueKey];
+                count[key][valueKey] += 1;
+                mean[key][valueKey] += delta / count[key][valueKey];
+                squares[key][valueKey] += delta * (points - mean[key][valueKey]);
             }
 
             points += 1;
         }
 
-        for (Issue issue : issues) {
-            int issueNumber = issue.getNumber();
-            IssueDiscrete issueD = (IssueDiscrete) issue;
-            int key = mapping_issues.get(issueNumber);
-
+        for (int key = 0; key < nissues; key++) {
             double max_deviation = 0;
 
-            for (ValueDiscrete valueDiscrete : issueD.getValues()) {
-                double total = 0;
-                double size = this.positions[key][mapping_values.get(valueDiscrete + String.valueOf(issueNumber))].size();
-                List<Integer> value_position = this.positions[key][mapping_values.get(valueDiscrete + String.valueOf(issueNumber))];
-
-                for (Integer pos : value_position)
-                    total += pos;
-
-                //get the mean position of the current value on the bid ranking
-                double mean = total / size;
-                double deviation = 0;
-                for (Integer pos : value_position)
-                    deviation += (mean - pos) * (mean - pos);
-
-                deviation = deviation / size;
+            for (int valueKey = 0; valueKey < count[key].length; valueKey++) {
+                //values that are not in the ranking keep mean and deviation 0
+                double deviation = count[key][valueKey] == 0 ? 0 : squares[key][valueKey] / count[key][valueKey];
                 max_deviation = Math.max(deviation, max_deviation);
-                this.setUtility(issue, valueDiscrete, mean);
-                EvaluatorDiscrete evaluator = (EvaluatorDiscrete) this.u.getEvaluator(issue);
+
+                //the mean position of the current value on the bid ranking
+                this.valueUtilities[key][valueKey] = mean[key][valueKey];
             }
 
-            this.setWeight(issue, 1 / max_deviation);
+            //values seen once, or always at the same position, have no deviation: below one position the
+            //deviation says nothing, so it is floored there instead of giving an infinite weight
+            this.weights[key] = 1 / Math.max(max_deviation, 1);
         }
     }
 
     /**
-     * Calculates uncertainty modelling based on an linear programming
+     * Calculates uncertainty modelling based on an linear programming: the utility of each value is non-negative,
+     * the worst and best bids of the ranking get the lowest and highest utility, and the sum of the slack needed
+     * to keep every other pair of consecutive bids in order is minimized.
+     * That problem has a row per ranked bid but a column per value plus a slack per pair, so its dual is solved
+     * instead: a row per value, a column per pair bounded by [0, 1] in place of the slack, and the utilities of the
+     * values are the prices of its rows. A column only has the values where two consecutive bids differ.
      *
-     * @param Bids          List of Bids ordered by relative preference
+     * @param ranking       Encoded bids ordered by relative preference
      * @param vars          number of values
      * @param lowerUtility  the lowest utility in the ranking
      * @param higherUtility the highest utility in the ranking
-     * @param issues        List of issues in the domain
+     * @return false if the solver did not find a solution within the budget
      */
-    private void LP(List<Bid> Bids, int vars, double lowerUtility, double higherUtility, List<Issue> issues) {
-        this.u = getUtilitySpace();
-
-        //add the number of slack variables
-        int slackvars = Bids.size() - 1;
-        vars += slackvars;
-
-        double[] variables = new double[vars];
-
-        for (int i = 0; i < slackvars; i++) {
-            variables[i] = 1;
-        }
-
-        LinearObjectiveFunction objectiveFunction = new LinearObjectiveFunction(variables, 0);
-
-        Collection<LinearConstraint> constraints = new ArrayList<>();
-        for (int pos = 0; pos < vars; pos++) {
-            Arrays.fill(variables, 0);
-            variables[pos] = 1;
-            constraints.add(new LinearConstraint(variables, Relationship.GEQ, 0));
-        }
-        Arrays.fill(variables, 0);
-
-        double[] previous_values = new double[vars];
-        int k = 0;
-
-        for (Bid b : Bids) {
-            double[] values_issue = get_values_bid(b, slackvars, vars);
-
-            //constraint the lowest value bid to have the same value as the given one
-            if (k == 0)
-                constraints.add(new LinearConstraint(values_issue, Relationship.EQ, lowerUtility));
-            else {
-                for (int pos = 0; pos < vars; pos++)
-                    variables[pos] = values_issue[pos] - previous_values[pos];
-
-                //add correspondent slack variable
-                variables[k - 1] = 1;
-                constraints.add(new LinearConstraint(variables, Relationship.GEQ, 0));
+    private boolean LP(int[][] ranking, int vars, double lowerUtility, double higherUtility) {
+        if (ranking.length < 2)
+            return false;
+        BoundedSimplex dual = new BoundedSimplex(vars, new double[vars]);
+        int nissues = this.encoder.getNumberOfIssues();
+
+        //the equality constraints on the worst and best bids are free variables of the dual
+        int[] worst = ranking[0];
+        int[] best = ranking[ranking.length - 1];
+        int[] rows = new int[nissues];
+        double[] ones = new double[nissues];
+        Arrays.fill(ones, 1);
+        for (int key = 0; key < nissues; key++)
+            rows[key] = this.issue_offsets[key] + worst[key];
+        dual.addColumn(lowerUtility, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, rows, ones);
+        rows = new int[nissues];
+        for (int key = 0; key < nissues; key++)
+            rows[key] = this.issue_offsets[key] + best[key];
+        dual.addColumn(higherUtility, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, rows, ones);
+
+        //utility of each bid at least the one of the bid before it, less its slack of cost 1
+        for (int k = 1; k < ranking.length; k++) {
+            int[] encoded = ranking[k];
+            int[] previous = ranking[k - 1];
+            int differences = 0;
+            for (int key = 0; key < nissues; key++) {
+                if (encoded[key] != previous[key])
+                    differences++;
             }
-
-            //constraint the biggest value bid to have the same value as the given one
-            if (k == slackvars)
-                constraints.add(new LinearConstraint(values_issue, Relationship.EQ, higherUtility));
-
-            k += 1;
-
-            for (int pos = 0; pos < vars; pos++)
-                previous_values[pos] = values_issue[pos];
+            int[] pairRows = new int[2 * differences];
+            double[] pairValues = new double[2 * differences];
+            int n = 0;
+            for (int key = 0; key < nissues; key++) {
+                if (encoded[key] != previous[key]) {
+                    pairRows[n] = this.issue_offsets[key] + encoded[key];
+                    pairValues[n++] = 1;
+                    pairRows[n] = this.issue_offsets[key] + previous[key];
+                    pairValues[n++] = -1;
+                }
+            }
+            dual.addColumn(0, 0, 1, pairRows, pairValues);
         }
 
-        SimplexSolver solver = new SimplexSolver();
-        solver.setMaxIterations(Integer.MAX_VALUE);
-        PointValuePair solution = solver.optimize(objectiveFunction, constraints, GoalType.MINIMIZE, true);
+        long deadline = this.lpBudgetMillis > 0 ? System.nanoTime() + this.lpBudgetMillis * 1000000L : 0;
+        if (!dual.maximize(deadline))
+            return false;
 
-        int pos = slackvars;
-        for (Issue issue : issues) {
-            IssueDiscrete issueD = (IssueDiscrete) issue;
-            for (ValueDiscrete valueD : issueD.getValues()) {
-                this.setUtility(issue, valueD, solution.getPoint()[pos]);
-                pos += 1;
-            }
+        for (int key = 0; key < nissues; key++) {
+            for (int valueKey = 0; valueKey < this.encoder.getNumberOfValues(key); valueKey++)
+                this.valueUtilities[key][valueKey] = Math.max(0, dual.getPrice(this.issue_offsets[key] + valueKey));
+            //issues keep the same weight, as in the space of the factory
+            this.weights[key] = 1;
         }
+        return true;
     }
 
     /**
-     * Setups the arrays of the current bid, for linear programming
-     *
-     * @param b            Current bid
-     * @param numberSlacks Number of slack variables
-     * @param arraySize    Total number of variables
-     * @return array representing a constraint for linear programming
+     * Estimate published by an estimation, with the number of its version.
      */
-    private double[] get_values_bid(Bid b, int numberSlacks, int arraySize) {
-        double[] values = new double[arraySize];
-
-        for (Issue issue : b.getIssues()) {
-            int issueNumber = issue.getNumber();
-            IssueDiscrete issueD = (IssueDiscrete) issue;
-
-            ValueDiscrete v = (ValueDiscrete) b.getValue(issueNumber);
-
-            int index = numberSlacks;
-            int key = mapping_issues.get(issueNumber);
-            //get the number of issues before this, and respective number of values
-            for (int issues = 0; issues < key; issues++)
-                index += this.number_values_per_issue.get(issues);
-
-            for (ValueDiscrete valueD : issueD.getValues()) {
-                if (valueD.hashCode() == v.hashCode()) {
-                    values[index] = 1;
-                    break;
-                } else
-                    index += 1;
-            }
-        }
+    private static final class Estimate {
+        private final EncodedUtilitySpace encoded;
+        private final int version;
 
-        return values;
+        Estimate(EncodedUtilitySpace encoded, int version) {
+            this.encoded = encoded;
+            this.version = version;
+        }
     }
 }
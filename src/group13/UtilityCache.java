@@ -0,0 +1,207 @@
+package group13;
+
+import genius.core.Bid;
+import genius.core.utility.AbstractUtilitySpace;
+
+import java.util.Arrays;
+
+/**
+ * Bounded cache of the utility of bids in a utility space, keyed by the packed encoding of the bid.
+ * Only bids with the values their encoding stands for are cached: a bid with an integer or real value elsewhere in
+ * its bin shares its key with other bids, so it is evaluated exactly by the utility space instead.
+ * When it is full, entries are evicted with the CLOCK algorithm (second chance).
+ * Entries live in flat arrays and are found through an open addressing table, so lookups do not allocate.
+ */
+public class UtilityCache {
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    private final BidEncoder encoder;
+    private final AbstractUtilitySpace space;
+    //evaluates misses on the encoding when the space is additive or estimated, instead of building the bid
+    private final EncodedUtilitySpace encodedSpace;
+    private final int capacity;
+
+    private final long[] keys;
+    private final double[] values;
+    private final boolean[] referenced;
+    //open addressing table with linear probing: index of the entry + 1, or 0 if the slot is empty
+    private final int[] table;
+    private final int mask;
+    private int size;
+    private int hand;
+
+    private long hits;
+    private long misses;
+    //reused to encode bids without allocating
+    private final int[] encodedBid;
+
+    /**
+     * @param encoder Index of the domain
+     * @param space   Utility space behind the cache
+     */
+    public UtilityCache(BidEncoder encoder, AbstractUtilitySpace space) {
+        this(encoder, space, (int) Math.min(DEFAULT_CAPACITY, Math.max(1, encoder.getNumberOfBids())));
+    }
+
+    /**
+     * @param encoder  Index of the domain
+     * @param space    Utility space behind the cache
+     * @param capacity Maximum number of bids kept
+     */
+    public UtilityCache(BidEncoder encoder, AbstractUtilitySpace space, int capacity) {
+        this.encoder = encoder;
+        this.space = space;
+        this.encodedSpace = EncodedUtilitySpace.of(encoder, space);
+        this.capacity = capacity;
+        this.keys = new long[capacity];
+        this.values = new double[capacity];
+        this.referenced = new boolean[capacity];
+
+        int slots = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1) << 1;
+        this.table = new int[slots];
+        this.mask = slots - 1;
+        this.encodedBid = new int[encoder.getNumberOfIssues()];
+    }
+
+    /**
+     * @param b Bid
+     * @return Utility of the bid in the space
+     */
+    public double getUtility(Bid b) {
+        if (b == null || !encoder.isPackable()) {
+            misses++;
+            return space.getUtility(b);
+        }
+        int[] encoded = encoder.encode(b, encodedBid);
+        if (!encoder.isRepresentative(b, encoded)) {
+            misses++;
+            return space.getUtility(b);
+        }
+        return getUtility(encoded, b);
+    }
+
+    /**
+     * @param encoded Index of the value of each issue
+     * @return Utility of the bid in the space
+     */
+    public double getUtility(int[] encoded) {
+        if (!encoder.isPackable()) {
+            misses++;
+            return evaluate(encoded, null);
+        }
+        return getUtility(encoded, null);
+    }
+
+    private double getUtility(int[] encoded, Bid b) {
+        long key = encoder.pack(encoded);
+        int entry = find(key);
+        if (entry >= 0) {
+            hits++;
+            referenced[entry] = true;
+            return values[entry];
+        }
+
+        misses++;
+        double utility = evaluate(encoded, b);
+        put(key, utility);
+        return utility;
+    }
+
+    private double evaluate(int[] encoded, Bid b) {
+        if (encodedSpace != null)
+            return encodedSpace.getUtility(encoded);
+        return space.getUtility(b != null ? b : encoder.decode(encoded));
+    }
+
+    private static int hash(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+
+    private int find(long key) {
+        for (int slot = hash(key) & mask; table[slot] != 0; slot = (slot + 1) & mask) {
+            if (keys[table[slot] - 1] == key)
+                return table[slot] - 1;
+        }
+        return -1;
+    }
+
+    private void put(long key, double utility) {
+        int entry;
+        if (size < capacity) {
+            entry = size++;
+        } else {
+            // second chance: skip and clear referenced entries until one was not used since the last pass
+            while (referenced[hand]) {
+                referenced[hand] = false;
+                hand = (hand + 1) % capacity;
+            }
+            entry = hand;
+            hand = (hand + 1) % capacity;
+            remove(keys[entry]);
+        }
+
+        keys[entry] = key;
+        values[entry] = utility;
+        referenced[entry] = false;
+
+        int slot = hash(key) & mask;
+        while (table[slot] != 0)
+            slot = (slot + 1) & mask;
+        table[slot] = entry + 1;
+    }
+
+    /**
+     * Removes a key from the table, shifting back the entries of its probe sequence.
+     */
+    private void remove(long key) {
+        int slot = hash(key) & mask;
+        while (keys[table[slot] - 1] != key)
+            slot = (slot + 1) & mask;
+        table[slot] = 0;
+
+        for (int next = (slot + 1) & mask; table[next] != 0; next = (next + 1) & mask) {
+            int home = hash(keys[table[next] - 1]) & mask;
+            // the entry can move to the free slot if its home is not in (slot, next]
+            boolean inRange = slot <= next ? (slot < home && home <= next) : (slot < home || home <= next);
+            if (!inRange) {
+                table[slot] = table[next];
+                table[next] = 0;
+                slot = next;
+            }
+        }
+    }
+
+    /**
+     * Empties the cache, e.g. when the utility space behind it changes.
+     */
+    public void clear() {
+        Arrays.fill(table, 0);
+        Arrays.fill(referenced, false);
+        size = 0;
+        hand = 0;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public double getHitRate() {
+        long total = hits + misses;
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+}
@@ -0,0 +1,49 @@
+package group13;
+
+import genius.core.timeline.TimeLineInfo;
+
+/**
+ * Timeline whose time is set by the caller instead of read from the clock, so an agent can be driven
+ * at full speed through a negotiation (benchmarks, replays) and see exactly the same times on every run.
+ */
+public class VirtualTimeline implements TimeLineInfo {
+    private final Type type;
+    private final double totalTime;
+    private double time;
+
+    /**
+     * @param type      Kind of deadline the agent sees
+     * @param totalTime Total rounds or seconds of the negotiation
+     */
+    public VirtualTimeline(Type type, double totalTime) {
+        this.type = type;
+        this.totalTime = totalTime;
+    }
+
+    /**
+     * @param time Normalized time, from 0 (start) to 1 (deadline)
+     */
+    public void setTime(double time) {
+        this.time = Math.max(0, Math.min(1, time));
+    }
+
+    @Override
+    public Type getType() {
+        return type;
+    }
+
+    @Override
+    public double getTime() {
+        return time;
+    }
+
+    @Override
+    public double getTotalTime() {
+        return totalTime;
+    }
+
+    @Override
+    public double getCurrentTime() {
+        return time * totalTime;
+    }
+}